@@ -0,0 +1,157 @@
+import java.util.Arrays;
+
+/**
+ * Class to describe a vehicle's motion over times which are not evenly spaced, as made by AdaptiveStepper
+ * Times between two instances are worked out from the step joining them: position and velocity change along
+ * a straight line and acceleration and jerk are those of the step, i.e. the values of the later instance,
+ * which is exactly what TrafficModel.advanceFollowingCar assumes during one step
+ * @author Benjamin Chant
+ */
+public class AdaptiveMotion implements Trajectory {
+	private static final int DEFAULT_CAPACITY = 1024;
+	
+	private long[] times;
+	private double[] positions;
+	private double[] velocities;
+	private double[] accelerations;
+	private double[] jerks;
+	private int size = 0;
+	private int cursor = 0; // Index of the step found by the last lookup, lookups mostly move forward a little at a time
+	
+	public AdaptiveMotion() {
+		times = new long[DEFAULT_CAPACITY];
+		positions = new double[DEFAULT_CAPACITY];
+		velocities = new double[DEFAULT_CAPACITY];
+		accelerations = new double[DEFAULT_CAPACITY];
+		jerks = new double[DEFAULT_CAPACITY];
+	}
+	
+	/**
+	 * @param time	must be after the last time, by any amount
+	 */
+	@Override
+	public void appendInstance(double position, double velocity, double acceleration, double jerk, long time) {
+		if (size > 0 && time <= times[size - 1]) {
+			throw new IllegalArgumentException("Times must be increasing, got " + time + " after " + times[size - 1]);
+		}
+		if (size == times.length) {
+			int capacity = size + (size >> 1);
+			times = Arrays.copyOf(times, capacity);
+			positions = Arrays.copyOf(positions, capacity);
+			velocities = Arrays.copyOf(velocities, capacity);
+			accelerations = Arrays.copyOf(accelerations, capacity);
+			jerks = Arrays.copyOf(jerks, capacity);
+		}
+		times[size] = time;
+		positions[size] = position;
+		velocities[size] = velocity;
+		accelerations[size] = acceleration;
+		jerks[size] = jerk;
+		size++;
+	}
+	
+	/**
+	 * Finds the instance at or just after the given time, starting from where the last lookup ended
+	 * and only falling back to a binary search when the time is not close by
+	 * @param time	should be in millis
+	 * @return		index i with times[i - 1] < time <= times[i], or 0 for the first time
+	 * @throws IndexOutOfBoundsException	if the time is outside the motion
+	 */
+	public int indexAtOrAfter(long time) {
+		Metrics.countLookup();
+		if (size == 0 || time < times[0] || time > times[size - 1]) {
+			throw new IndexOutOfBoundsException("No instance at time " + time);
+		}
+		int index = cursor;
+		if (index >= size) {
+			index = size - 1;
+		}
+		if (times[index] >= time && (index == 0 || times[index - 1] < time)) {
+			return index;
+		}
+		if (index + 1 < size && times[index] < time && times[index + 1] >= time) {
+			cursor = index + 1;
+			return index + 1;
+		}
+		
+		index = Arrays.binarySearch(times, 0, size, time);
+		if (index < 0) {
+			index = -index - 1; // Insertion point, the first time after the one asked for
+		}
+		cursor = index;
+		return index;
+	}
+	
+	@Override
+	public double getPosition(long time) {
+		int index = indexAtOrAfter(time);
+		return interpolate(positions, index, time);
+	}
+	
+	@Override
+	public double getVelocity(long time) {
+		int index = indexAtOrAfter(time);
+		return interpolate(velocities, index, time);
+	}
+	
+	@Override
+	public double getAcceleration(long time) {
+		return accelerations[indexAtOrAfter(time)];
+	}
+	
+	@Override
+	public double getJerk(long time) {
+		return jerks[indexAtOrAfter(time)];
+	}
+	
+	/**
+	 * Straight line between the instance before and the instance at index
+	 */
+	private double interpolate(double[] values, int index, long time) {
+		if (times[index] == time) {
+			return values[index];
+		}
+		double fraction = (double)(time - times[index - 1]) / (double)(times[index] - times[index - 1]);
+		return values[index - 1] + (values[index] - values[index - 1]) * fraction;
+	}
+	
+	/**
+	 * Looks the motion up at every time on a uniform grid, so it can be drawn, saved or compared like any other
+	 * @param timeStep	spacing of the grid, should be in millis
+	 * @return		a CarMotion from the first time to the last time which lands on the grid
+	 */
+	public CarMotion resample(long timeStep) {
+		long startTime = times[0];
+		int samples = (int)((getLastTime() - startTime) / timeStep) + 1;
+		CarMotion motion = new CarMotion(timeStep, samples);
+		for (int i = 0; i < samples; i++) {
+			long time = startTime + i * timeStep;
+			motion.appendInstance(getPosition(time), getVelocity(time), getAcceleration(time), getJerk(time), time);
+		}
+		return motion;
+	}
+	
+	/**
+	 * Getters which go straight to the index rather than the time
+	 */
+	public int size() {
+		return size;
+	}
+	
+	public long getTime(int index) {
+		return times[index];
+	}
+	
+	@Override
+	public long getLastTime() {
+		return times[size - 1];
+	}
+	
+	public double getPositionAt(int index) {
+		return positions[index];
+	}
+	
+	public double getVelocityAt(int index) {
+		return velocities[index];
+	}
+}
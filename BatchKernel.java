@@ -0,0 +1,46 @@
+/**
+ * The inner loops of BatchSimulation, each one moves the same car on one time step in every scenario at once
+ * Arrays hold one value per scenario. The "old" arrays hold the values from a reaction time ago and may be
+ * the very same arrays as the "next" ones being written, so each scenario's old values must be read before its next are written.
+ * All the arithmetic is done in the same order as TrafficModel and the FollowingModels so the results are identical
+ * @author Benjamin Chant
+ */
+public interface BatchKernel {
+	/**
+	 * Picks the Vector API kernel when the jdk.incubator.vector module has been added (java --add-modules jdk.incubator.vector),
+	 * otherwise plain loops which the JIT can vectorise itself. Setting -Dtrafficmodel.vector=false forces the plain loops
+	 */
+	static BatchKernel create() {
+		boolean vectorModule = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+		if (vectorModule && !"false".equals(System.getProperty("trafficmodel.vector"))) {
+			return new VectorBatchKernel();
+		}
+		return new PlainBatchKernel();
+	}
+	
+	/**
+	 * Every scenario's car has the same acceleration, used for the lead car and before the reaction time has passed
+	 */
+	void constantAcceleration(double[] position, double[] velocity, double[] nextPosition, double[] nextVelocity,
+			double acceleration, double timeStep, int count);
+	
+	/**
+	 * LINEAR_CAR_FOLLOWING, see LinearCarFollowingModel
+	 * @param maxAcceleration	largest size of acceleration so far in each scenario, updated
+	 */
+	void linearCarFollowing(double[] oldLeadVelocity, double[] oldVelocity, double[] position, double[] velocity,
+			double[] nextPosition, double[] nextVelocity, double[] lambda, double[] maxAcceleration, double timeStep, int count);
+	
+	/**
+	 * PROPORTIONAL_ACCELERATION, see ProportionalAccelerationModel
+	 * @param maxAcceleration	largest size of acceleration so far in each scenario, updated
+	 */
+	void proportionalAcceleration(double[] oldLeadPosition, double[] oldLeadVelocity, double[] oldPosition, double[] position, double[] velocity,
+			double[] nextPosition, double[] nextVelocity, double[] lambda, double[] maxAcceleration, ModelConfig config, double timeStep, int count);
+	
+	/**
+	 * Keeps the smallest gap between a car and the one in front in each scenario
+	 * @param minGap	smallest gap so far in each scenario, updated
+	 */
+	void minGap(double[] leadPosition, double[] position, double[] minGap, int count);
+}
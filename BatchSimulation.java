@@ -0,0 +1,187 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs many copies of the same platoon side by side (a Monte Carlo batch), each scenario with its own starting positions,
+ * starting velocities and LAMBDA, moving every scenario on together each time step.
+ * Each car keeps a reaction time of history as one array per time step holding every scenario,
+ * so the inner loops in BatchKernel run straight along arrays and can use vector instructions.
+ * Only the LINEAR_CAR_FOLLOWING and PROPORTIONAL_ACCELERATION models are supported
+ * @author Benjamin Chant
+ */
+public class BatchSimulation {
+	private ModelConfig config;
+	private BatchKernel kernel = BatchKernel.create();
+	private int scenarios;
+	private int window; // Number of time steps of history kept, one reaction time plus the current step
+	private double[][][] positions; // [car][time step % window][scenario]
+	private double[][][] velocities;
+	private double[] lambdas;
+	private double[] minGaps;
+	private double[] maxAccelerations;
+	private RingBufferMotion leadCar; // The lead car accelerates the same in every scenario so it is only worked out once
+	private long time = 0; // millis
+	private long step = 0;
+	
+	public static void main(String args[]) {
+		int scenarios = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int followers = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+		ModelConfig config = new ModelConfig();
+		if (args.length > 2) {
+			config.setModel(TrafficModel.Model.valueOf(args[2]));
+		}
+		
+		// Spreads LAMBDA across the scenarios
+		BatchSimulation batch = new BatchSimulation(config, scenarios, followers);
+		for (int i = 0; i < scenarios; i++) {
+			batch.setLambda(i, 0.05 + 0.45 * i / Math.max(1, scenarios - 1));
+		}
+		
+		long start = System.nanoTime();
+		batch.run();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		
+		int collisions = 0;
+		for (ScenarioSummary summary : batch.getSummaries()) {
+			collisions += summary.isCollided() ? 1 : 0;
+		}
+		long steps = (long)scenarios * followers * (config.getSampleCount() - 1);
+		System.out.println(scenarios + " scenarios with " + batch.kernel.getClass().getSimpleName() + " took " + seconds + " s ("
+				+ (long)(steps / seconds) + " steps/s), " + collisions + " collided");
+	}
+	
+	/**
+	 * Sets up every scenario the same as TrafficModel.run(), use the setters to make them differ
+	 * @param config	parameters shared by every scenario, its LAMBDA is the starting LAMBDA of each scenario
+	 * @param scenarios	number of copies of the platoon
+	 * @param followers	number of following cars in each platoon
+	 */
+	public BatchSimulation(ModelConfig config, int scenarios, int followers) {
+		if (config.getModel() != TrafficModel.Model.LINEAR_CAR_FOLLOWING && config.getModel() != TrafficModel.Model.PROPORTIONAL_ACCELERATION) {
+			throw new IllegalArgumentException(config.getModel() + " can't be run as a batch");
+		}
+		if (config.getReactionTime() % config.getTimeStep() != 0) {
+			throw new IllegalArgumentException("The reaction time must be a whole number of time steps to run as a batch");
+		}
+		this.config = config;
+		this.scenarios = scenarios;
+		window = (int)(config.getReactionTime() / config.getTimeStep()) + 1;
+		positions = new double[followers + 1][window][scenarios];
+		velocities = new double[followers + 1][window][scenarios];
+		lambdas = new double[scenarios];
+		minGaps = new double[scenarios];
+		maxAccelerations = new double[scenarios];
+		
+		leadCar = new RingBufferMotion(config.getTimeStep(), 1, 0, null);
+		TrafficModel.startLeadCar(leadCar);
+		double[] offsets = Platoon.evenlySpaced(followers, 20.0, 20.0);
+		for (int i = 0; i < scenarios; i++) {
+			setLeadStart(i, leadCar.getPosition(0), leadCar.getVelocity(0));
+			for (int car = 1; car <= followers; car++) {
+				setFollowerStart(i, car, offsets[car - 1], 10.0);
+			}
+			lambdas[i] = config.getLambda();
+		}
+	}
+	
+	/**
+	 * Setters for the starting values of a scenario, to be used before run()
+	 */
+	public void setLeadStart(int scenario, double position, double velocity) {
+		positions[0][0][scenario] = position;
+		velocities[0][0][scenario] = velocity;
+	}
+	
+	/**
+	 * @param car	1 for the first following car, 2 for the one behind it, ...
+	 */
+	public void setFollowerStart(int scenario, int car, double position, double velocity) {
+		positions[car][0][scenario] = position;
+		velocities[car][0][scenario] = velocity;
+	}
+	
+	public void setLambda(int scenario, double lambda) {
+		lambdas[scenario] = lambda;
+	}
+	
+	/**
+	 * Runs every scenario to the config's run time
+	 */
+	public void run() {
+		int cars = positions.length;
+		if (step == 0) {
+			Arrays.fill(minGaps, Double.POSITIVE_INFINITY);
+			for (int car = 1; car < cars; car++) {
+				kernel.minGap(positions[car - 1][0], positions[car][0], minGaps, scenarios);
+			}
+		}
+		
+		long timeStepMillis = config.getTimeStep();
+		long rxnTimeMillis = config.getReactionTime();
+		double timeStep = (double)timeStepMillis / 1000.0; // Convert to seconds for ease
+		boolean linear = config.getModel() == TrafficModel.Model.LINEAR_CAR_FOLLOWING;
+		Metrics.Phase phase = Metrics.begin("batch", -1);
+		long fromStep = step;
+		while (time < config.getRunTime()) {
+			int current = (int)(step % window);
+			int next = (int)((step + 1) % window);
+			int old = next; // A reaction time ago is the slot the next step is about to overwrite
+			
+			// From the back of the platoon to the front, as in StreamingSimulation, so the car in front's old values are still there
+			for (int car = cars - 1; car > 0; car--) {
+				if (time < rxnTimeMillis) {
+					kernel.constantAcceleration(positions[car][current], velocities[car][current], positions[car][next], velocities[car][next],
+							0.0, timeStep, scenarios);
+				} else if (linear) {
+					kernel.linearCarFollowing(velocities[car - 1][old], velocities[car][old], positions[car][current], velocities[car][current],
+							positions[car][next], velocities[car][next], lambdas, maxAccelerations, timeStep, scenarios);
+				} else {
+					kernel.proportionalAcceleration(positions[car - 1][old], velocities[car - 1][old], positions[car][old],
+							positions[car][current], velocities[car][current], positions[car][next], velocities[car][next],
+							lambdas, maxAccelerations, config, timeStep, scenarios);
+				}
+			}
+			
+			TrafficModel.advanceLeadCar(config, leadCar, time + timeStepMillis);
+			kernel.constantAcceleration(positions[0][current], velocities[0][current], positions[0][next], velocities[0][next],
+					leadCar.getAcceleration(time + timeStepMillis), timeStep, scenarios);
+			
+			for (int car = 1; car < cars; car++) {
+				kernel.minGap(positions[car - 1][next], positions[car][next], minGaps, scenarios);
+			}
+			time += timeStepMillis;
+			step++;
+		}
+		Metrics.end(phase, (step - fromStep) * cars * scenarios);
+	}
+	
+	/**
+	 * One ScenarioSummary per scenario, the same as ScenarioSummary.fromMotions() would give for that scenario
+	 */
+	public List<ScenarioSummary> getSummaries() {
+		List<ScenarioSummary> summaries = new ArrayList<ScenarioSummary>();
+		for (int i = 0; i < scenarios; i++) {
+			ModelConfig scenarioConfig = new ModelConfig(config);
+			scenarioConfig.setLambda(lambdas[i]);
+			summaries.add(new ScenarioSummary(scenarioConfig, minGaps[i], maxAccelerations[i], minGaps[i] < TrafficModel.VEHICLE_LENGTH));
+		}
+		return summaries;
+	}
+	
+	/**
+	 * Getters for where a car is at the current time in one scenario
+	 * @param car	0 for the lead car, 1 for the first following car, ...
+	 */
+	public double getPosition(int scenario, int car) {
+		return positions[car][(int)(step % window)][scenario];
+	}
+	
+	public double getVelocity(int scenario, int car) {
+		return velocities[car][(int)(step % window)][scenario];
+	}
+	
+	public long getTime() {
+		return time;
+	}
+}
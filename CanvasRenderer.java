@@ -0,0 +1,68 @@
+import javafx.animation.AnimationTimer;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+/**
+ * Draws every car onto a single Canvas each frame, rather than having a Rectangle and KeyFrames per car like Video's Timeline
+ * Each frame works out how far through the run it is from the clock and reads every car's position at that time,
+ * so nothing is built up front and a slow frame just skips ahead instead of slowing the animation down.
+ * Cars which would land on the same column of pixels as the car drawn before them are skipped,
+ * so however many cars there are at most one is drawn per column
+ * @author Benjamin Chant
+ */
+public class CanvasRenderer extends AnimationTimer {
+	private static final double PLAYBACK_SPEED = 10.0; // Model millis per real milli, the same speed as the Timeline
+	private static final double ROAD_Y = 200.0; // pixels
+	private static final double CAR_HEIGHT = 5.0; // pixels
+	private static final Color[] COLORS = {Color.BLUE, Color.RED, Color.GREEN};
+	
+	private Canvas canvas;
+	private CarMotion[] cars;
+	private long runTime; // millis
+	private double origin; // meters, drawn at the left edge
+	private double scaleFactor; // pixels/meter
+	private long startNanos = -1;
+	
+	/**
+	 * @param canvas	what to draw on
+	 * @param cars	motion of every car, lead car first
+	 */
+	public CanvasRenderer(Canvas canvas, CarMotion[] cars) {
+		this.canvas = canvas;
+		this.cars = cars;
+		this.runTime = cars[0].getLastTime();
+		
+		// Rescales the distances so the car furthest back at the start and the lead car at the end are both onscreen
+		origin = cars[0].getPositionAt(0);
+		for (CarMotion car : cars) {
+			origin = Math.min(origin, car.getPositionAt(0));
+		}
+		double totalDist = cars[0].getPositionAt(cars[0].size() - 1) - origin;
+		scaleFactor = canvas.getWidth() / totalDist;
+	}
+	
+	@Override
+	public void handle(long now) {
+		if (startNanos < 0) {
+			startNanos = now;
+		}
+		double time = runTime == 0 ? 0 : ((now - startNanos) / 1e6 * PLAYBACK_SPEED) % runTime;
+		
+		GraphicsContext graphics = canvas.getGraphicsContext2D();
+		graphics.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+		
+		int lastColumn = Integer.MIN_VALUE;
+		for (int i = 0; i < cars.length; i++) {
+			double x = (cars[i].interpolatePosition(time) - origin) * scaleFactor;
+			int column = (int)x;
+			// The first few cars are always drawn so they keep their colours
+			if (column == lastColumn && i >= COLORS.length) {
+				continue;
+			}
+			lastColumn = column;
+			graphics.setFill(COLORS[Math.min(i, COLORS.length - 1)]);
+			graphics.fillRect(x, ROAD_Y, TrafficModel.VEHICLE_LENGTH, CAR_HEIGHT);
+		}
+	}
+}
@@ -1,45 +1,217 @@
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
- * Class to describe a vehicle's motion by containing two fields
- * one an ArrayList of CarInstances and the other is the ascociated times.
+ * Class to describe a vehicle's motion by holding each variable in its own primitive array
+ * (position, velocity, acceleration and jerk) over a uniform grid of times.
+ * Since the times are evenly spaced a time is found by index arithmetic instead of searching.
  * Contains method to write data out to text file.
  * @author Benjamin Chant
  */
-public class CarMotion {
-	private ArrayList<CarInstance> instances = new ArrayList<CarInstance>();
-	private ArrayList<Long> times = new ArrayList<Long>();
-	
+public class CarMotion implements Trajectory {
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	private double[] positions;
+	private double[] velocities;
+	private double[] accelerations;
+	private double[] jerks;
+	private int size = 0;
+	private long startTime = 0; // millis
+	private long timeStep = 0; // millis // 0 until the second instance fixes the grid spacing
+
+	public CarMotion() {
+		this(0, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Use when the length of the run is known up front so the arrays never need to grow
+	 * @param timeStep	spacing of the time grid in millis, or 0 to take it from the first two appended times
+	 * @param capacity	number of instances to make room for
+	 */
+	public CarMotion(long timeStep, int capacity) {
+		this.timeStep = timeStep;
+		capacity = Math.max(capacity, 2);
+		positions = new double[capacity];
+		velocities = new double[capacity];
+		accelerations = new double[capacity];
+		jerks = new double[capacity];
+	}
+
 	/**
 	 * Will be used depending on the model to get previous values from a different time code
+	 * The returned CarInstance is a copy of the stored values, changing it does not change the motion
 	 * @param time	should be in millis
 	 * @return		the CarInstance for the specific time given
 	 */
 	public CarInstance getInstance(long time) {
-		int index = times.indexOf(Long.valueOf(time));
-		return instances.get(index);
+		int index = indexOf(time);
+		return new CarInstance(positions[index], velocities[index], accelerations[index], jerks[index]);
 	}
-	
+
 	/**
 	 * Will be used in the methods describing the model to create the motion of both lead and following vehicles
 	 * @param instance
 	 * @param time
 	 */
 	public void appendInstance(CarInstance instance, long time) {
-		if (times == null) {
-			times = new ArrayList<Long>();
-			instances = new ArrayList<CarInstance>();
+		appendInstance(instance.getPosition(), instance.getVelocity(), instance.getAcceleration(), instance.getJerk(), time);
+	}
+
+	/**
+	 * Same as appendInstance(CarInstance, long) but without needing a CarInstance to be made
+	 * @param time	must be the next time on the grid, i.e. the last time plus the time step
+	 */
+	@Override
+	public void appendInstance(double position, double velocity, double acceleration, double jerk, long time) {
+		if (size == 0) {
+			startTime = time;
+		} else if (size == 1 && timeStep == 0) {
+			if (time <= startTime) {
+				throw new IllegalArgumentException("Times must be increasing, got " + time + " after " + startTime);
+			}
+			timeStep = time - startTime;
+		} else if (time != startTime + size * timeStep) {
+			throw new IllegalArgumentException("Time " + time + " is not the next time on the grid, expected " + (startTime + size * timeStep));
+		}
+
+		if (size == positions.length) {
+			int capacity = size + (size >> 1);
+			positions = Arrays.copyOf(positions, capacity);
+			velocities = Arrays.copyOf(velocities, capacity);
+			accelerations = Arrays.copyOf(accelerations, capacity);
+			jerks = Arrays.copyOf(jerks, capacity);
 		}
-		
-		times.add(Long.valueOf(time));
-		instances.add(instance);
+
+		positions[size] = position;
+		velocities[size] = velocity;
+		accelerations[size] = acceleration;
+		jerks[size] = jerk;
+		size++;
 		return;
 	}
+
+	/**
+	 * Converts a time into the index of the arrays, equivalent of the old times.indexOf(time)
+	 * @param time	should be in millis
+	 * @return		index of the instance at that time
+	 * @throws IndexOutOfBoundsException	if there is no instance at that time
+	 */
+	public int indexOf(long time) {
+		Metrics.countLookup();
+		long offset = time - startTime;
+		if (size > 1 && offset % timeStep == 0) {
+			long index = offset / timeStep;
+			if (index >= 0 && index < size) {
+				return (int)index;
+			}
+		} else if (size == 1 && offset == 0) {
+			return 0;
+		}
+		throw new IndexOutOfBoundsException("No instance at time " + time);
+	}
+
+	/**
+	 * Getters for the individual variables, avoid making a CarInstance in the models' inner loops
+	 * @param time	should be in millis
+	 */
+	@Override
+	public double getPosition(long time) {
+		return positions[indexOf(time)];
+	}
+
+	@Override
+	public double getVelocity(long time) {
+		return velocities[indexOf(time)];
+	}
+
+	@Override
+	public double getAcceleration(long time) {
+		return accelerations[indexOf(time)];
+	}
+
+	@Override
+	public double getJerk(long time) {
+		return jerks[indexOf(time)];
+	}
+
+	/**
+	 * Position at any time within the motion, worked out along a straight line between the instances either side of it
+	 * Used where times don't land on the grid, such as drawing a frame of the animation
+	 * @param time	should be in millis, times outside the motion give the first or last position
+	 * @return		the position at that time
+	 */
+	public double interpolatePosition(double time) {
+		if (size == 0) {
+			throw new IndexOutOfBoundsException("No instances to interpolate between");
+		}
+		double index = size == 1 ? 0 : (time - startTime) / timeStep;
+		if (index <= 0) {
+			return positions[0];
+		} else if (index >= size - 1) {
+			return positions[size - 1];
+		}
+		int before = (int)index;
+		double fraction = index - before;
+		return positions[before] + (positions[before + 1] - positions[before]) * fraction;
+	}
+
+	/**
+	 * Copies the start of the motion, e.g. to hand out part of a longer motion without it being changed afterwards
+	 * @param time	last time to copy, should be in millis
+	 * @return		a new motion holding the instances from the start up to and including that time
+	 */
+	public CarMotion copyUntil(long time) {
+		int count = indexOf(time) + 1;
+		CarMotion copy = new CarMotion(timeStep, count);
+		System.arraycopy(positions, 0, copy.positions, 0, count);
+		System.arraycopy(velocities, 0, copy.velocities, 0, count);
+		System.arraycopy(accelerations, 0, copy.accelerations, 0, count);
+		System.arraycopy(jerks, 0, copy.jerks, 0, count);
+		copy.startTime = startTime;
+		copy.size = count;
+		return copy;
+	}
 	
+	/**
+	 * Getters which go straight to the index rather than the time
+	 */
+	public int size() {
+		return size;
+	}
+
+	public long getTime(int index) {
+		return startTime + index * timeStep;
+	}
+
+	@Override
+	public long getLastTime() {
+		return getTime(size - 1);
+	}
+
+	public long getStartTime() {
+		return startTime;
+	}
+
+	public long getTimeStep() {
+		return timeStep;
+	}
+
+	public double getPositionAt(int index) {
+		return positions[index];
+	}
+
+	public double getVelocityAt(int index) {
+		return velocities[index];
+	}
+
+	public double getAccelerationAt(int index) {
+		return accelerations[index];
+	}
+
+	public double getJerkAt(int index) {
+		return jerks[index];
+	}
+
 	/**
 	 * Takes each variable for each time and writes out to the given text file in the format
 	 * time1 pos1 vel1 acc1 jerk1
@@ -48,23 +220,6 @@ public class CarMotion {
 	 * @param file
 	 */
 	public void writeCarMotionToFile(File file) {
-		try {
-        	BufferedWriter writer = new BufferedWriter(new FileWriter(file));
-        	
-        	for (long time : times) {
-				CarInstance carInstance = getInstance(time);
-        		writer.write(String.valueOf(time) + " ");
-        		writer.write(String.valueOf(carInstance.getPosition() + " "));
-        		writer.write(String.valueOf(carInstance.getVelocity() + " "));
-        		writer.write(String.valueOf(carInstance.getAcceleration() + " "));
-        		writer.write(String.valueOf(carInstance.getJerk()));
-        		writer.newLine();
-			}
-        	
-            writer.close();
-        }
-        catch(IOException ex) {
-            System.out.println("Error writing to file");
-        }
+		MotionExporter.write(this, file); // Same output as writing each variable with String.valueOf, only quicker
 	}
 }
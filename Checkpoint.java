@@ -0,0 +1,308 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Everything needed to carry on a StreamingSimulation from part way through: the parameters, the time,
+ * and each car's recent instances going back one reaction time (the most the model ever reads back)
+ * Saved as a little-endian binary file
+ * 	magic version time carCount capacity
+ * 	case model customModel timeStep runTime rxnTime maxDecel maxAccel maxJerk lambda leadSource
+ * 	car0 startTime count held, positions, velocities, accelerations, jerks (held of each, oldest first)
+ * 	car1 ...
+ * leadSource says where the lead car comes from (see describe()), so resuming carries on with the same lead car.
+ * Resuming gives exactly the same instances as if the run had never stopped
+ * @author Benjamin Chant
+ */
+public class Checkpoint {
+	private static final int MAGIC = 0x504B4843; // "CHKP" when read as little-endian bytes
+	private static final int VERSION = 2; // 1 had no leadSource, those are still read
+	
+	private ModelConfig config;
+	private String leadSource; // From describe()
+	private long time; // millis
+	private int capacity;
+	private long[] startTimes; // millis
+	private long[] counts;
+	private double[][][] instances; // [car][variable][instance], variables in the order position, velocity, acceleration, jerk
+	
+	/**
+	 * Runs a StreamingSimulation taking checkpoints into a file, or resumes from that file if it is already there
+	 * e.g. java Checkpoint file=run.chk followers=100 runTime=3600000 interval=60000
+	 * lead=<file> follows a recorded lead car (see RecordedLeadMotion) rather than the default Case
+	 */
+	public static void main(String args[]) throws IOException {
+		File file = new File("run.chk");
+		int followers = 2;
+		long runTime = TrafficModel.RUN_TIME;
+		long interval = 10000;
+		File leadFile = null;
+		for (String arg : args) {
+			String[] keyValue = arg.split("=", 2);
+			if (keyValue.length != 2) {
+				throw new IllegalArgumentException("Arguments should look like name=value but got " + arg);
+			}
+			switch (keyValue[0]) {
+			case "file":
+				file = new File(keyValue[1]);
+				break;
+			case "followers":
+				followers = Integer.parseInt(keyValue[1]);
+				break;
+			case "runTime":
+				runTime = Long.parseLong(keyValue[1]);
+				break;
+			case "interval":
+				interval = Long.parseLong(keyValue[1]);
+				break;
+			case "lead":
+				leadFile = new File(keyValue[1]);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown argument " + keyValue[0]);
+			}
+		}
+		
+		StreamingSimulation simulation;
+		if (file.exists()) {
+			simulation = read(file).resume(null);
+			simulation.getConfig().setRunTime(runTime);
+			System.out.println("Resuming from " + simulation.getTime() + " ms");
+		} else {
+			ModelConfig config = new ModelConfig();
+			config.setRunTime(runTime);
+			LeadMotionSource leadSource = leadFile == null ? null : LeadMotionSource.recorded(leadFile);
+			simulation = new StreamingSimulation(config, Platoon.evenlySpaced(followers, 20.0, 20.0), null, leadSource);
+		}
+		
+		CheckpointWriter writer = new CheckpointWriter(file);
+		simulation.setCheckpoints(writer, interval);
+		simulation.run();
+		writer.close();
+		if (simulation.getLeadSource() instanceof RecordedLeadMotion) {
+			((RecordedLeadMotion)simulation.getLeadSource()).close();
+		}
+		int last = simulation.getCarCount() - 1;
+		System.out.println("Last car finished at position " + simulation.getCar(last).getPosition(simulation.getTime()));
+	}
+	
+	private Checkpoint() {
+	}
+	
+	/**
+	 * Copies the simulation's state, so the simulation can carry on while the copy is being saved
+	 * @param simulation	must be between steps
+	 */
+	public static Checkpoint of(StreamingSimulation simulation) {
+		Checkpoint checkpoint = new Checkpoint();
+		int carCount = simulation.getCarCount();
+		checkpoint.config = new ModelConfig(simulation.getConfig());
+		checkpoint.leadSource = describe(simulation.getLeadSource());
+		checkpoint.time = simulation.getTime();
+		checkpoint.capacity = simulation.getCar(0).getCapacity();
+		checkpoint.startTimes = new long[carCount];
+		checkpoint.counts = new long[carCount];
+		checkpoint.instances = new double[carCount][4][];
+		for (int car = 0; car < carCount; car++) {
+			RingBufferMotion motion = simulation.getCar(car);
+			int held = motion.getHeldCount();
+			double[][] variables = checkpoint.instances[car];
+			for (int v = 0; v < 4; v++) {
+				variables[v] = new double[held];
+			}
+			motion.copyHeld(variables[0], variables[1], variables[2], variables[3]);
+			checkpoint.startTimes[car] = motion.getStartTime();
+			checkpoint.counts[car] = motion.getCount();
+		}
+		return checkpoint;
+	}
+	
+	/**
+	 * Says where a lead car comes from in a way that can be saved and made again by leadSource()
+	 * @param leadSource	lead car of a StreamingSimulation, null for the config's Case stepped on by TrafficModel
+	 * @return		"" for null, "stepped", "closed" or "recorded:" and the whole path of the file
+	 * @throws IllegalArgumentException	for any other kind of LeadMotionSource, which can't be saved
+	 */
+	public static String describe(LeadMotionSource leadSource) {
+		if (leadSource == null) {
+			return "";
+		} else if (leadSource instanceof SteppedLeadMotion) {
+			return "stepped";
+		} else if (leadSource instanceof ClosedFormLeadMotion) {
+			return "closed";
+		} else if (leadSource instanceof RecordedLeadMotion) {
+			return "recorded:" + ((RecordedLeadMotion)leadSource).getFile().getAbsolutePath();
+		}
+		throw new IllegalArgumentException("Can't take checkpoints of a run whose lead car comes from a " + leadSource.getClass().getName());
+	}
+	
+	/**
+	 * Makes the lead car's source again from what describe() gave, the opposite of describe()
+	 * A recorded lead car's file is opened again and read on from the lead car's last instance
+	 * @throws IOException	if a recorded lead car's file can't be opened
+	 */
+	private LeadMotionSource leadSource(ModelConfig config) throws IOException {
+		if (leadSource.isEmpty()) {
+			return null;
+		} else if (leadSource.equals("stepped")) {
+			return new SteppedLeadMotion(config);
+		} else if (leadSource.equals("closed")) {
+			return new ClosedFormLeadMotion(config);
+		} else if (leadSource.startsWith("recorded:")) {
+			return new RecordedLeadMotion(new File(leadSource.substring("recorded:".length())));
+		}
+		throw new IOException("Unknown lead car source " + leadSource);
+	}
+	
+	/**
+	 * Builds a simulation at the checkpoint's time, ready to carry on running with the same lead car as before
+	 * @param sink	where every instance after the checkpoint is sent, can be null
+	 * @throws IOException	if the run followed a recorded lead car whose file can no longer be opened
+	 */
+	public StreamingSimulation resume(MotionSink sink) throws IOException {
+		ModelConfig resumed = new ModelConfig(config);
+		return resume(sink, leadSource(resumed), resumed);
+	}
+	
+	/**
+	 * Same as resume(MotionSink) but with the lead car coming from the given source,
+	 * e.g. a recorded lead car which has been moved since the checkpoint was taken
+	 * @param leadSource	where the lead car carries on from, null for the config's Case stepped on by TrafficModel
+	 */
+	public StreamingSimulation resume(MotionSink sink, LeadMotionSource leadSource) {
+		return resume(sink, leadSource, new ModelConfig(config));
+	}
+	
+	private StreamingSimulation resume(MotionSink sink, LeadMotionSource leadSource, ModelConfig config) {
+		RingBufferMotion[] cars = new RingBufferMotion[counts.length];
+		for (int car = 0; car < cars.length; car++) {
+			double[][] variables = instances[car];
+			cars[car] = new RingBufferMotion(config.getTimeStep(), capacity, car, sink);
+			cars[car].restore(startTimes[car], counts[car], variables[0].length, variables[0], variables[1], variables[2], variables[3]);
+		}
+		return new StreamingSimulation(config, cars, time, sink, leadSource);
+	}
+	
+	/**
+	 * Saves the checkpoint to a temporary file first and then renames it, so the file is never left half written
+	 * @param file
+	 */
+	public void write(File file) {
+		byte[] caseName = config.getCase().name().getBytes(StandardCharsets.UTF_8);
+		byte[] modelName = config.getModel().name().getBytes(StandardCharsets.UTF_8);
+		byte[] customModel = (config.getCustomModel() == null ? "" : config.getCustomModel()).getBytes(StandardCharsets.UTF_8);
+		byte[] lead = leadSource.getBytes(StandardCharsets.UTF_8);
+		int bytes = 24 + 4 * Integer.BYTES + caseName.length + modelName.length + customModel.length + lead.length + 7 * Long.BYTES;
+		for (int car = 0; car < counts.length; car++) {
+			bytes += 2 * Long.BYTES + Integer.BYTES + 4 * Double.BYTES * instances[car][0].length;
+		}
+		
+		ByteBuffer buffer = ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(MAGIC).putInt(VERSION).putLong(time).putInt(counts.length).putInt(capacity);
+		buffer.putInt(caseName.length).put(caseName);
+		buffer.putInt(modelName.length).put(modelName);
+		buffer.putInt(customModel.length).put(customModel);
+		buffer.putLong(config.getTimeStep()).putLong(config.getRunTime()).putLong(config.getReactionTime());
+		buffer.putDouble(config.getMaxDecel()).putDouble(config.getMaxAccel()).putDouble(config.getMaxJerk()).putDouble(config.getLambda());
+		buffer.putInt(lead.length).put(lead);
+		for (int car = 0; car < counts.length; car++) {
+			double[][] variables = instances[car];
+			buffer.putLong(startTimes[car]).putLong(counts[car]).putInt(variables[0].length);
+			for (double[] values : variables) {
+				for (double value : values) {
+					buffer.putDouble(value);
+				}
+			}
+		}
+		buffer.flip();
+		
+		File temporary = new File(file.getPath() + ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.WRITE)) {
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				channel.force(false);
+			}
+			Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch(IOException ex) {
+			System.out.println("Error writing to file");
+		}
+	}
+	
+	/**
+	 * Loads a checkpoint saved by write()
+	 * @param file
+	 * @throws IOException	if the file can't be read or isn't a checkpoint
+	 */
+	public static Checkpoint read(File file) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+		if (buffer.remaining() < 24 || buffer.getInt() != MAGIC) {
+			throw new IOException(file + " is not a checkpoint");
+		}
+		int version = buffer.getInt();
+		if (version < 1 || version > VERSION) {
+			throw new IOException(file + " is a checkpoint from a different version");
+		}
+		
+		Checkpoint checkpoint = new Checkpoint();
+		checkpoint.time = buffer.getLong();
+		int carCount = buffer.getInt();
+		checkpoint.capacity = buffer.getInt();
+		ModelConfig config = new ModelConfig();
+		config.setCase(TrafficModel.Case.valueOf(readString(buffer)));
+		config.setModel(TrafficModel.Model.valueOf(readString(buffer)));
+		String customModel = readString(buffer);
+		config.setCustomModel(customModel.isEmpty() ? null : customModel);
+		config.setTimeStep(buffer.getLong());
+		config.setRunTime(buffer.getLong());
+		config.setReactionTime(buffer.getLong());
+		config.setMaxDecel(buffer.getDouble());
+		config.setMaxAccel(buffer.getDouble());
+		config.setMaxJerk(buffer.getDouble());
+		config.setLambda(buffer.getDouble());
+		checkpoint.config = config;
+		checkpoint.leadSource = version >= 2 ? readString(buffer) : "";
+		
+		checkpoint.startTimes = new long[carCount];
+		checkpoint.counts = new long[carCount];
+		checkpoint.instances = new double[carCount][4][];
+		for (int car = 0; car < carCount; car++) {
+			checkpoint.startTimes[car] = buffer.getLong();
+			checkpoint.counts[car] = buffer.getLong();
+			int held = buffer.getInt();
+			for (int v = 0; v < 4; v++) {
+				double[] values = new double[held];
+				buffer.asDoubleBuffer().get(values);
+				buffer.position(buffer.position() + held * Double.BYTES);
+				checkpoint.instances[car][v] = values;
+			}
+		}
+		return checkpoint;
+	}
+	
+	private static String readString(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Getters
+	 */
+	public ModelConfig getConfig() {
+		return config;
+	}
+	
+	public long getTime() {
+		return time;
+	}
+}
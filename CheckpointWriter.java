@@ -0,0 +1,73 @@
+import java.io.File;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Saves checkpoints on a thread of its own so the simulation only stops long enough to copy its state
+ * If the last checkpoint is still being saved when the next one is due, the next one is skipped rather than waited for
+ * @author Benjamin Chant
+ */
+public class CheckpointWriter {
+	private File file;
+	private ExecutorService thread;
+	private Future<?> pending = null;
+	private long taken = 0;
+	private long skipped = 0;
+	
+	/**
+	 * @param file	where every checkpoint is saved, each one replacing the last
+	 */
+	public CheckpointWriter(File file) {
+		this.file = file;
+		this.thread = Executors.newSingleThreadExecutor(runnable -> {
+			Thread writer = new Thread(runnable, "checkpoint-writer");
+			writer.setDaemon(true);
+			return writer;
+		});
+	}
+	
+	/**
+	 * Copies the simulation's state now and saves it in the background
+	 * @param simulation	must be between steps
+	 */
+	public void submit(StreamingSimulation simulation) {
+		if (pending != null && !pending.isDone()) {
+			skipped++;
+			return;
+		}
+		Checkpoint checkpoint = Checkpoint.of(simulation);
+		pending = thread.submit(() -> checkpoint.write(file));
+		taken++;
+	}
+	
+	/**
+	 * Waits for the last checkpoint to be saved and stops the thread
+	 */
+	public void close() {
+		try {
+			if (pending != null) {
+				pending.get();
+			}
+		}
+		catch(InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		catch(ExecutionException ex) {
+			System.out.println("Error writing to file");
+		}
+		thread.shutdown();
+	}
+	
+	/**
+	 * Getters
+	 */
+	public long getTaken() {
+		return taken;
+	}
+	
+	public long getSkipped() {
+		return skipped;
+	}
+}
@@ -0,0 +1,31 @@
+/**
+ * Keeps every instance of every car in a CarMotion, for when the whole motions are wanted at the end
+ * of a streamed run, e.g. to write them to a TrajectoryFile
+ * @author Benjamin Chant
+ */
+public class CollectingSink implements MotionSink {
+	private CarMotion[] cars;
+	
+	/**
+	 * @param config	parameters of the run, sets the size of each motion so they never need to grow
+	 * @param carCount	number of cars including the lead car
+	 */
+	public CollectingSink(ModelConfig config, int carCount) {
+		cars = new CarMotion[carCount];
+		for (int i = 0; i < carCount; i++) {
+			cars[i] = new CarMotion(config.getTimeStep(), config.getSampleCount());
+		}
+	}
+	
+	@Override
+	public void accept(int car, long time, double position, double velocity, double acceleration, double jerk) {
+		cars[car].appendInstance(position, velocity, acceleration, jerk, time);
+	}
+	
+	/**
+	 * @return		the motion of each car, lead car first
+	 */
+	public CarMotion[] getCars() {
+		return cars;
+	}
+}
@@ -0,0 +1,25 @@
+/**
+ * Passes every instance on to several sinks, e.g. writing the motions out while also keeping running statistics
+ * @author Benjamin Chant
+ */
+public class CombinedSink implements MotionSink {
+	private MotionSink[] sinks;
+	
+	public CombinedSink(MotionSink... sinks) {
+		this.sinks = sinks;
+	}
+	
+	@Override
+	public void accept(int car, long time, double position, double velocity, double acceleration, double jerk) {
+		for (MotionSink sink : sinks) {
+			sink.accept(car, time, position, velocity, acceleration, jerk);
+		}
+	}
+	
+	@Override
+	public void finish() {
+		for (MotionSink sink : sinks) {
+			sink.finish();
+		}
+	}
+}
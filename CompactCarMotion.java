@@ -0,0 +1,466 @@
+import java.util.Arrays;
+
+/**
+ * Class to describe a vehicle's motion in much less memory than CarMotion, for large platoons run for a long time
+ * Instances are stored in blocks of 64, each block starting with the full values, then each instance after that
+ * stored only as how it differs from what could be worked out from the instance before:
+ * Lossless (a resolution of 0), gives back exactly the values appended so the model reads back exactly what it wrote.
+ * 	A flags byte, then only the values which aren't what TrafficModel's integration would give (velocity + acceleration * dt
+ * 	and position + velocity * dt) or which have changed (acceleration and jerk), each as the bits which differ from before
+ * Quantized (a resolution over 0), every value is rounded to a multiple of the resolution so each stored value is out by
+ * 	at most half of it. The whole multiples are stored as small variable length differences, for position the change in its change.
+ * 	The bound is only per stored value: when the model runs on quantized cars it reads back the rounded values and
+ * 	its errors build up (a platoon at 0.001 drifts a few millimeters), and for the model's own smooth output lossless is
+ * 	smaller anyway (about 2.6 against 4.5 bytes per instance for a platoon). Quantized is for data which doesn't follow the integration,
+ * 	such as a recorded lead car with sensor noise, where lossless saves next to nothing (about 31 bytes per instance for
+ * 	a noisy recording against 4.6 to 6.6 quantized at 0.01 to 0.001)
+ * A time is found by index arithmetic as in CarMotion, then decoded from the nearest of two cursors, each keeping the last
+ * instance it decoded. The model reads every car at two times which move forward together a reaction time apart (200
+ * instances at the defaults), so each cursor follows one of them and only decodes one instance each step, carrying
+ * straight on into the next block rather than starting it again. A read which neither cursor is close to starts the
+ * one used least recently again from the start of the block. Run on compact cars a 50 car 600 s platoon takes about
+ * 0.6 to 0.7 s against 0.3 s on CarMotion (main() times both, "50 600000 0 5" for five runs with the last timed),
+ * with a single cursor it took about 2.4 s
+ * Not safe to read from several threads at once since reading moves the cursors
+ * @author Benjamin Chant
+ */
+public class CompactCarMotion implements Trajectory {
+	private static final int BLOCK = 64;
+	private static final int POSITION = 1, VELOCITY = 2, ACCELERATION = 4, JERK = 8; // Flags of values stored in full (lossless)
+	
+	private final long timeStep; // millis
+	private final double dt; // seconds, worked out the same way as in TrafficModel
+	private final double resolution; // 0 for lossless
+	private long startTime = 0; // millis
+	private int size = 0;
+	
+	private byte[] bytes = new byte[1024];
+	private int length = 0; // Bytes used
+	private int[] blocks = new int[16]; // Where each block starts in bytes
+	
+	// Last instance appended, what the next one is stored against
+	private double lastPosition, lastVelocity, lastAcceleration, lastJerk;
+	private long lastQPosition, lastQPositionChange, lastQVelocity, lastQAcceleration, lastQJerk;
+	
+	private final Cursor[] cursors = {new Cursor(), new Cursor()};
+	private Cursor lastUsed = cursors[0];
+	private long decoded; // Last value read by getVarLong()
+	
+	/**
+	 * The last instance decoded by one of the cursors
+	 */
+	private static class Cursor {
+		private int index = -1; // -1 for none
+		private int offset; // Where the instance after it starts in bytes
+		private double position, velocity, acceleration, jerk;
+		private long qPosition, qPositionChange, qVelocity, qAcceleration, qJerk;
+	}
+	
+	public static void main(String args[]) {
+		int followers = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		ModelConfig config = new ModelConfig();
+		if (args.length > 1) {
+			config.setRunTime(Long.parseLong(args[1]));
+		}
+		double resolution = args.length > 2 ? Double.parseDouble(args[2]) : 0.0;
+		int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 1; // Times to run both platoons, only the last is timed
+		
+		CarMotion leadCar = null;
+		CarMotion[] cars = null;
+		CompactCarMotion[] compact = null;
+		long carMotionNanos = 0, compactNanos = 0;
+		for (int round = 0; round < rounds; round++) {
+			long start = System.nanoTime();
+			leadCar = TrafficModel.generateLeadCar(config);
+			cars = Platoon.generate(config, leadCar, Platoon.evenlySpaced(followers, 20.0, 20.0), 1);
+			carMotionNanos = System.nanoTime() - start;
+			
+			// The same platoon again but only ever held compactly, each car reading back the compact car in front
+			start = System.nanoTime();
+			compact = new CompactCarMotion[cars.length];
+			compact[0] = CompactCarMotion.of(leadCar, resolution);
+			for (int i = 1; i < cars.length; i++) {
+				compact[i] = new CompactCarMotion(config.getTimeStep(), resolution);
+				TrafficModel.startFollowingCar(compact[i], cars[i].getPositionAt(0));
+				TrafficModel.advanceFollowingCar(config, compact[i - 1], compact[i], leadCar.getLastTime());
+			}
+			compactNanos = System.nanoTime() - start;
+		}
+		
+		long compactBytes = 0;
+		double maxError = 0.0; // Of the platoon run on compact cars, which builds up when quantized
+		double maxStoredError = 0.0; // Of the exact platoon only stored compactly, at most half the resolution
+		for (int i = 0; i < cars.length; i++) {
+			compactBytes += compact[i].getBytes();
+			CompactCarMotion stored = CompactCarMotion.of(cars[i], resolution);
+			for (int j = 0; j < cars[i].size(); j++) {
+				long time = cars[i].getTime(j);
+				maxError = Math.max(maxError, Math.abs(cars[i].getPositionAt(j) - compact[i].getPosition(time)));
+				maxStoredError = Math.max(maxStoredError, Math.abs(cars[i].getPositionAt(j) - stored.getPosition(time)));
+			}
+		}
+		long samples = (long)cars.length * leadCar.size();
+		System.out.println(config);
+		System.out.println("CarMotion " + 4 * Double.BYTES + " bytes per instance, compact " + (double)compactBytes / samples
+				+ " bytes per instance, largest position difference when stored " + maxStoredError + " m, when run on " + maxError + " m");
+		System.out.println("Platoon run on CarMotion took " + carMotionNanos / 1e9 + " s, on compact cars " + compactNanos / 1e9 + " s");
+	}
+	
+	/**
+	 * @param timeStep	spacing of the time grid in millis
+	 * @param resolution	0 to keep the values exactly, otherwise the size of the steps the values are rounded to
+	 */
+	public CompactCarMotion(long timeStep, double resolution) {
+		if (timeStep <= 0 || resolution < 0) {
+			throw new IllegalArgumentException("Time step must be over 0 and resolution at least 0");
+		}
+		this.timeStep = timeStep;
+		this.dt = (double)timeStep / 1000.0;
+		this.resolution = resolution;
+	}
+	
+	/**
+	 * Copies a CarMotion into a compact one
+	 */
+	public static CompactCarMotion of(CarMotion motion, double resolution) {
+		CompactCarMotion compact = new CompactCarMotion(motion.getTimeStep() > 0 ? motion.getTimeStep() : TrafficModel.TIME_STEP, resolution);
+		for (int i = 0; i < motion.size(); i++) {
+			compact.appendInstance(motion.getPositionAt(i), motion.getVelocityAt(i), motion.getAccelerationAt(i), motion.getJerkAt(i), motion.getTime(i));
+		}
+		return compact;
+	}
+	
+	/**
+	 * Decodes every instance back into a CarMotion
+	 */
+	public CarMotion toCarMotion() {
+		CarMotion motion = new CarMotion(timeStep, size);
+		for (int i = 0; i < size; i++) {
+			Cursor cursor = seek(i);
+			motion.appendInstance(cursor.position, cursor.velocity, cursor.acceleration, cursor.jerk, startTime + i * timeStep);
+		}
+		return motion;
+	}
+	
+	/**
+	 * @param time	must be the next time on the grid, i.e. the last time plus the time step
+	 */
+	@Override
+	public void appendInstance(double position, double velocity, double acceleration, double jerk, long time) {
+		if (size == 0) {
+			startTime = time;
+		} else if (time != startTime + size * timeStep) {
+			throw new IllegalArgumentException("Time " + time + " is not the next time on the grid, expected " + (startTime + size * timeStep));
+		}
+		ensureRoom(1 + 4 * 10);
+		
+		if (size % BLOCK == 0) {
+			// Start of a block, everything in full
+			int block = size / BLOCK;
+			if (block == blocks.length) {
+				blocks = Arrays.copyOf(blocks, block + (block >> 1));
+			}
+			blocks[block] = length;
+			if (resolution == 0) {
+				putLong(Double.doubleToRawLongBits(position));
+				putLong(Double.doubleToRawLongBits(velocity));
+				putLong(Double.doubleToRawLongBits(acceleration));
+				putLong(Double.doubleToRawLongBits(jerk));
+			} else {
+				lastQPosition = quantize(position);
+				lastQPositionChange = 0;
+				lastQVelocity = quantize(velocity);
+				lastQAcceleration = quantize(acceleration);
+				lastQJerk = quantize(jerk);
+				putLong(lastQPosition);
+				putLong(lastQVelocity);
+				putLong(lastQAcceleration);
+				putLong(lastQJerk);
+			}
+		} else if (resolution == 0) {
+			double predictedVelocity = lastVelocity + acceleration * dt;
+			double predictedPosition = lastPosition + velocity * dt;
+			int flagsAt = length++;
+			int flags = 0;
+			if (Double.doubleToRawLongBits(acceleration) != Double.doubleToRawLongBits(lastAcceleration)) {
+				flags |= ACCELERATION;
+				putXor(acceleration, lastAcceleration);
+			}
+			if (Double.doubleToRawLongBits(jerk) != Double.doubleToRawLongBits(lastJerk)) {
+				flags |= JERK;
+				putXor(jerk, lastJerk);
+			}
+			if (Double.doubleToRawLongBits(velocity) != Double.doubleToRawLongBits(predictedVelocity)) {
+				flags |= VELOCITY;
+				putXor(velocity, predictedVelocity);
+			}
+			if (Double.doubleToRawLongBits(position) != Double.doubleToRawLongBits(predictedPosition)) {
+				flags |= POSITION;
+				putXor(position, predictedPosition);
+			}
+			bytes[flagsAt] = (byte)flags;
+		} else {
+			long qPosition = quantize(position);
+			long qVelocity = quantize(velocity);
+			long qAcceleration = quantize(acceleration);
+			long qJerk = quantize(jerk);
+			long positionChange = qPosition - lastQPosition;
+			putVarLong(positionChange - lastQPositionChange);
+			putVarLong(qVelocity - lastQVelocity);
+			putVarLong(qAcceleration - lastQAcceleration);
+			putVarLong(qJerk - lastQJerk);
+			lastQPosition = qPosition;
+			lastQPositionChange = positionChange;
+			lastQVelocity = qVelocity;
+			lastQAcceleration = qAcceleration;
+			lastQJerk = qJerk;
+		}
+		
+		lastPosition = position;
+		lastVelocity = velocity;
+		lastAcceleration = acceleration;
+		lastJerk = jerk;
+		size++;
+	}
+	
+	/**
+	 * Decodes up to the instance at the index with whichever cursor gets there soonest
+	 * @return		the cursor, holding the instance
+	 */
+	private Cursor seek(int index) {
+		if (lastUsed.index == index) {
+			return lastUsed; // Most reads are another value of the instance just read
+		}
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("No instance " + index);
+		}
+		// Going on from a cursor at or before the index, unless starting its block again is quicker
+		Cursor cursor = null;
+		int steps = index % BLOCK + 1; // Starting the block again decodes its first instance too
+		for (Cursor candidate : cursors) {
+			if (candidate.index >= 0 && candidate.index <= index && index - candidate.index <= steps) {
+				cursor = candidate;
+				steps = index - candidate.index;
+			}
+		}
+		if (cursor == null) {
+			cursor = lastUsed == cursors[0] ? cursors[1] : cursors[0];
+			startBlock(cursor, index / BLOCK);
+		}
+		lastUsed = cursor;
+		
+		while (cursor.index < index) {
+			if ((cursor.index + 1) % BLOCK == 0) {
+				startBlock(cursor, (cursor.index + 1) / BLOCK);
+			} else {
+				decodeNext(cursor);
+			}
+		}
+		return cursor;
+	}
+	
+	/**
+	 * Puts the cursor on the first instance of a block, which is stored in full
+	 */
+	private void startBlock(Cursor cursor, int block) {
+		int offset = blocks[block];
+		if (resolution == 0) {
+			cursor.position = Double.longBitsToDouble(getLong(offset));
+			cursor.velocity = Double.longBitsToDouble(getLong(offset + 8));
+			cursor.acceleration = Double.longBitsToDouble(getLong(offset + 16));
+			cursor.jerk = Double.longBitsToDouble(getLong(offset + 24));
+		} else {
+			cursor.qPosition = getLong(offset);
+			cursor.qPositionChange = 0;
+			cursor.qVelocity = getLong(offset + 8);
+			cursor.qAcceleration = getLong(offset + 16);
+			cursor.qJerk = getLong(offset + 24);
+			dequantize(cursor);
+		}
+		cursor.index = block * BLOCK;
+		cursor.offset = offset + 32;
+	}
+	
+	/**
+	 * Moves the cursor on to the next instance in the same block
+	 */
+	private void decodeNext(Cursor cursor) {
+		int offset = cursor.offset;
+		if (resolution == 0) {
+			int flags = bytes[offset++];
+			if ((flags & ACCELERATION) != 0) {
+				cursor.acceleration = Double.longBitsToDouble(Double.doubleToRawLongBits(cursor.acceleration) ^ getXor(offset));
+				offset += xorLength(offset);
+			}
+			if ((flags & JERK) != 0) {
+				cursor.jerk = Double.longBitsToDouble(Double.doubleToRawLongBits(cursor.jerk) ^ getXor(offset));
+				offset += xorLength(offset);
+			}
+			double predictedVelocity = cursor.velocity + cursor.acceleration * dt;
+			if ((flags & VELOCITY) != 0) {
+				cursor.velocity = Double.longBitsToDouble(Double.doubleToRawLongBits(predictedVelocity) ^ getXor(offset));
+				offset += xorLength(offset);
+			} else {
+				cursor.velocity = predictedVelocity;
+			}
+			double predictedPosition = cursor.position + cursor.velocity * dt;
+			if ((flags & POSITION) != 0) {
+				cursor.position = Double.longBitsToDouble(Double.doubleToRawLongBits(predictedPosition) ^ getXor(offset));
+				offset += xorLength(offset);
+			} else {
+				cursor.position = predictedPosition;
+			}
+		} else {
+			offset = getVarLong(offset);
+			cursor.qPositionChange += decoded;
+			cursor.qPosition += cursor.qPositionChange;
+			offset = getVarLong(offset);
+			cursor.qVelocity += decoded;
+			offset = getVarLong(offset);
+			cursor.qAcceleration += decoded;
+			offset = getVarLong(offset);
+			cursor.qJerk += decoded;
+			dequantize(cursor);
+		}
+		cursor.index++;
+		cursor.offset = offset;
+	}
+	
+	private long quantize(double value) {
+		return Math.round(value / resolution);
+	}
+	
+	private void dequantize(Cursor cursor) {
+		cursor.position = cursor.qPosition * resolution;
+		cursor.velocity = cursor.qVelocity * resolution;
+		cursor.acceleration = cursor.qAcceleration * resolution;
+		cursor.jerk = cursor.qJerk * resolution;
+	}
+	
+	/**
+	 * Converts a time into the index of the instance, as in CarMotion
+	 */
+	private int indexOf(long time) {
+		Metrics.countLookup();
+		long offset = time - startTime;
+		if (offset % timeStep == 0 && offset >= 0 && offset / timeStep < size) {
+			return (int)(offset / timeStep);
+		}
+		throw new IndexOutOfBoundsException("No instance at time " + time);
+	}
+	
+	@Override
+	public double getPosition(long time) {
+		return seek(indexOf(time)).position;
+	}
+	
+	@Override
+	public double getVelocity(long time) {
+		return seek(indexOf(time)).velocity;
+	}
+	
+	@Override
+	public double getAcceleration(long time) {
+		return seek(indexOf(time)).acceleration;
+	}
+	
+	@Override
+	public double getJerk(long time) {
+		return seek(indexOf(time)).jerk;
+	}
+	
+	@Override
+	public long getLastTime() {
+		return startTime + (size - 1) * timeStep;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Bytes of encoded instances, not counting the part of the arrays not yet used
+	 */
+	public long getBytes() {
+		return length + (long)((size + BLOCK - 1) / BLOCK) * Integer.BYTES;
+	}
+	
+	/**
+	 * Writing and reading the bytes
+	 */
+	private void ensureRoom(int needed) {
+		if (length + needed > bytes.length) {
+			bytes = Arrays.copyOf(bytes, Math.max(length + needed, bytes.length + (bytes.length >> 1)));
+		}
+	}
+	
+	private void putLong(long value) {
+		for (int i = 0; i < 8; i++) {
+			bytes[length++] = (byte)(value >>> (8 * i));
+		}
+	}
+	
+	private long getLong(int offset) {
+		long value = 0;
+		for (int i = 0; i < 8; i++) {
+			value |= (bytes[offset + i] & 0xFFL) << (8 * i);
+		}
+		return value;
+	}
+	
+	/**
+	 * Stores only the bytes of the two values' bits which differ, after a byte saying how many
+	 * zero bytes were left off the top and the bottom
+	 */
+	private void putXor(double value, double reference) {
+		long xor = Double.doubleToRawLongBits(value) ^ Double.doubleToRawLongBits(reference);
+		int leading = Long.numberOfLeadingZeros(xor) / 8;
+		int trailing = Long.numberOfTrailingZeros(xor) / 8;
+		bytes[length++] = (byte)((leading << 4) | trailing);
+		xor >>>= 8 * trailing;
+		for (int i = 0; i < 8 - leading - trailing; i++) {
+			bytes[length++] = (byte)(xor >>> (8 * i));
+		}
+	}
+	
+	private long getXor(int offset) {
+		int header = bytes[offset];
+		int leading = (header >>> 4) & 0xF;
+		int trailing = header & 0xF;
+		long xor = 0;
+		for (int i = 0; i < 8 - leading - trailing; i++) {
+			xor |= (bytes[offset + 1 + i] & 0xFFL) << (8 * i);
+		}
+		return xor << (8 * trailing);
+	}
+	
+	private int xorLength(int offset) {
+		int header = bytes[offset];
+		return 1 + 8 - ((header >>> 4) & 0xF) - (header & 0xF);
+	}
+	
+	/**
+	 * Zig-zag variable length encoding, small differences either side of 0 take one byte
+	 */
+	private void putVarLong(long value) {
+		long zigZag = (value << 1) ^ (value >> 63);
+		while ((zigZag & ~0x7FL) != 0) {
+			bytes[length++] = (byte)((zigZag & 0x7F) | 0x80);
+			zigZag >>>= 7;
+		}
+		bytes[length++] = (byte)zigZag;
+	}
+	
+	private int getVarLong(int offset) {
+		long zigZag = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = bytes[offset++];
+			zigZag |= (long)(b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		decoded = (zigZag >>> 1) ^ -(zigZag & 1);
+		return offset;
+	}
+}
@@ -0,0 +1,250 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * A mix of drivers rather than every following car having TrafficModel's parameters: each driver gets their own
+ * ModelConfig with the reaction time, lambda, maximum acceleration, deceleration and jerk drawn from a Spread.
+ * Reaction times are whole millis but need not be multiples of the time step, see TrafficModel.advanceFollowingCar().
+ * The same seed always gives the same drivers however many threads draw them, since the drivers are drawn in
+ * fixed size blocks each with its own generator split off one made from the seed, so no thread shares one
+ * Run with arguments such as: followers=10000 seed=7 rxn=lognormal:1500:0.25 lambda=uniform:0.05:0.2 decel=normal:-3:0.5
+ * @author Benjamin Chant
+ */
+public class DriverPopulation {
+	private static final int BLOCK_SIZE = 1024; // Drivers drawn from each generator, must not change or the same seed gives different drivers
+	
+	public static enum Shape {
+		FIXED, // a
+		UNIFORM, // between a and b
+		NORMAL, // mean a, standard deviation b
+		LOGNORMAL // median a, standard deviation b of the log
+	}
+	
+	/**
+	 * How one parameter is spread across the drivers, kept between a smallest and largest value which make sense for it
+	 */
+	public static class Spread {
+		private Shape shape;
+		private double a;
+		private double b;
+		private double min;
+		private double max;
+		
+		public Spread(Shape shape, double a, double b, double min, double max) {
+			this.shape = shape;
+			this.a = a;
+			this.b = b;
+			this.min = min;
+			this.max = max;
+		}
+		
+		/**
+		 * Reads a spread written as shape:a:b, e.g. normal:1500:300, or just a number for FIXED
+		 */
+		public static Spread parse(String value, double min, double max) {
+			String[] parts = value.split(":");
+			if (parts.length == 1) {
+				return new Spread(Shape.FIXED, Double.parseDouble(parts[0]), 0.0, min, max);
+			} else if (parts.length == 3) {
+				return new Spread(Shape.valueOf(parts[0].toUpperCase()), Double.parseDouble(parts[1]), Double.parseDouble(parts[2]), min, max);
+			}
+			throw new IllegalArgumentException("Spreads should look like shape:a:b or a number but got " + value);
+		}
+		
+		/**
+		 * @param random	generator of the driver being drawn
+		 * @return		a value for the driver, normal values outside the limits are drawn again rather than all piling up on the limit
+		 */
+		public double draw(SplittableRandom random) {
+			double value;
+			int tries = 0;
+			do {
+				switch (shape) {
+				case UNIFORM:
+					value = a + (b - a) * random.nextDouble();
+					break;
+				case NORMAL:
+					value = a + b * random.nextGaussian();
+					break;
+				case LOGNORMAL:
+					value = a * Math.exp(b * random.nextGaussian());
+					break;
+				default:
+					value = a;
+					break;
+				}
+				tries++;
+			} while ((value < min || value > max) && tries < 100);
+			return Math.min(Math.max(value, min), max);
+		}
+		
+		@Override
+		public String toString() {
+			return shape == Shape.FIXED ? String.valueOf(a) : shape.name().toLowerCase() + ":" + a + ":" + b;
+		}
+	}
+	
+	private ModelConfig base;
+	private Spread reactionTime; // millis
+	private Spread lambda;
+	private Spread maxAccel; // meter/(second^2)
+	private Spread maxDecel; // meter/(second^2)
+	private Spread maxJerk; // meter/(second^3)
+	
+	public static void main(String args[]) {
+		ModelConfig base = new ModelConfig();
+		DriverPopulation population = new DriverPopulation(base);
+		int followers = 1000;
+		long seed = 1;
+		int threads = Runtime.getRuntime().availableProcessors();
+		
+		for (String arg : args) {
+			String[] keyValue = arg.split("=", 2);
+			if (keyValue.length != 2) {
+				throw new IllegalArgumentException("Arguments should look like name=value but got " + arg);
+			}
+			if (population.setSpread(keyValue[0], keyValue[1])) {
+				continue;
+			}
+			switch (keyValue[0]) {
+			case "model":
+				base.setModel(TrafficModel.Model.valueOf(keyValue[1]));
+				break;
+			case "case":
+				base.setCase(TrafficModel.Case.valueOf(keyValue[1]));
+				break;
+			case "runTime":
+				base.setRunTime(Long.parseLong(keyValue[1]));
+				break;
+			case "followers":
+				followers = Integer.parseInt(keyValue[1]);
+				break;
+			case "seed":
+				seed = Long.parseLong(keyValue[1]);
+				break;
+			case "threads":
+				threads = Integer.parseInt(keyValue[1]);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown argument " + keyValue[0]);
+			}
+		}
+		
+		long start = System.nanoTime();
+		ModelConfig[] drivers = population.draw(followers, seed, threads);
+		CarMotion leadCar = TrafficModel.generateLeadCar(base);
+		CarMotion[] cars = Platoon.generate(drivers, leadCar, Platoon.evenlySpaced(followers, 20.0, 30.0), threads);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		
+		long shortest = Long.MAX_VALUE;
+		long longest = 0;
+		for (ModelConfig driver : drivers) {
+			shortest = Math.min(shortest, driver.getReactionTime());
+			longest = Math.max(longest, driver.getReactionTime());
+		}
+		System.out.println(followers + " drivers (" + population + ") seed " + seed + " on " + threads + " threads took " + seconds + " s");
+		System.out.println("Reaction times from " + shortest + " to " + longest + " ms");
+		System.out.println(ScenarioSummary.fromMotions(base, cars));
+	}
+	
+	/**
+	 * Starts with every driver the same as the base config
+	 * @param base	parameters shared by every driver, such as the model and time step, copied for each driver
+	 */
+	public DriverPopulation(ModelConfig base) {
+		this.base = base;
+		reactionTime = new Spread(Shape.FIXED, base.getReactionTime(), 0.0, 0.0, Double.MAX_VALUE);
+		lambda = new Spread(Shape.FIXED, base.getLambda(), 0.0, 0.0, Double.MAX_VALUE);
+		maxAccel = new Spread(Shape.FIXED, base.getMaxAccel(), 0.0, 0.1, Double.MAX_VALUE);
+		maxDecel = new Spread(Shape.FIXED, base.getMaxDecel(), 0.0, -Double.MAX_VALUE, -0.1);
+		maxJerk = new Spread(Shape.FIXED, base.getMaxJerk(), 0.0, 0.0, Double.MAX_VALUE);
+	}
+	
+	/**
+	 * Sets how one parameter is spread across the drivers
+	 * @param name	rxn, lambda, accel, decel or jerk
+	 * @param value	as Spread.parse() reads it
+	 * @return		false if the name isn't one of the parameters
+	 */
+	public boolean setSpread(String name, String value) {
+		switch (name) {
+		case "rxn":
+			reactionTime = Spread.parse(value, 0.0, Double.MAX_VALUE);
+			return true;
+		case "lambda":
+			lambda = Spread.parse(value, 0.0, Double.MAX_VALUE);
+			return true;
+		case "accel":
+			maxAccel = Spread.parse(value, 0.1, Double.MAX_VALUE);
+			return true;
+		case "decel":
+			maxDecel = Spread.parse(value, -Double.MAX_VALUE, -0.1);
+			return true;
+		case "jerk":
+			maxJerk = Spread.parse(value, 0.0, Double.MAX_VALUE);
+			return true;
+		default:
+			return false;
+		}
+	}
+	
+	/**
+	 * Draws a config for each driver
+	 * @param count	number of drivers
+	 * @param seed	the same seed gives the same drivers
+	 * @param threads	number of threads drawing blocks of drivers at once, doesn't change the drivers
+	 * @return		the drivers, first following car first
+	 */
+	public ModelConfig[] draw(int count, long seed, int threads) {
+		ModelConfig[] drivers = new ModelConfig[count];
+		
+		// Splitting is done here in order, so block b always gets the same generator
+		SplittableRandom root = new SplittableRandom(seed);
+		List<SplittableRandom> generators = new ArrayList<SplittableRandom>();
+		for (int from = 0; from < count; from += BLOCK_SIZE) {
+			generators.add(root.split());
+		}
+		
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+			for (int b = 0; b < generators.size(); b++) {
+				SplittableRandom random = generators.get(b);
+				int from = b * BLOCK_SIZE;
+				int to = Math.min(from + BLOCK_SIZE, count);
+				tasks.add(pool.submit(() -> {
+					for (int i = from; i < to; i++) {
+						drivers[i] = draw(random);
+					}
+				}));
+			}
+			for (ForkJoinTask<?> task : tasks) {
+				task.join();
+			}
+		} finally {
+			pool.shutdown();
+		}
+		return drivers;
+	}
+	
+	/**
+	 * Draws one driver, the parameters always in the same order
+	 */
+	private ModelConfig draw(SplittableRandom random) {
+		ModelConfig driver = new ModelConfig(base);
+		driver.setReactionTime(Math.round(reactionTime.draw(random)));
+		driver.setLambda(lambda.draw(random));
+		driver.setMaxAccel(maxAccel.draw(random));
+		driver.setMaxDecel(maxDecel.draw(random));
+		driver.setMaxJerk(maxJerk.draw(random));
+		return driver;
+	}
+	
+	@Override
+	public String toString() {
+		return "rxn " + reactionTime + " lambda " + lambda + " accel " + maxAccel + " decel " + maxDecel + " jerk " + maxJerk;
+	}
+}
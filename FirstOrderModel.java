@@ -0,0 +1,101 @@
+/**
+ * Similar to LINEAR_PREDICTION but uses a constant jerk equation for the predictions
+ * Uses parameters MAX_DECEL, MAX_ACCEL and MAX_JERK
+ * @author Benjamin Chant
+ */
+public class FirstOrderModel implements FollowingModel {
+	private final ModelConfig config;
+	private final double rxnTime; // seconds
+	private final double maxAccel;
+	private final double maxDecel;
+	private final double maxJerk;
+	
+	public FirstOrderModel(ModelConfig config) {
+		this.config = config;
+		this.rxnTime = (double)config.getReactionTime() / 1000.0; // Convert to seconds for ease
+		this.maxAccel = config.getMaxAccel();
+		this.maxDecel = config.getMaxDecel();
+		this.maxJerk = config.getMaxJerk();
+	}
+	
+	@Override
+	public void step(CarInstance car, double oldLeadPosition, double oldLeadVelocity, double oldLeadAcceleration, double oldLeadJerk,
+			double oldPosition, double oldVelocity, double oldAcceleration, double leadPosition, double leadVelocity, double timeStep) {
+		double acceleration = car.getAcceleration();
+		double jerk = car.getJerk();
+		
+		// Assume constant jerk in lead vehicle from time (RXN_TIME) ago,
+		// then what velocity will they have at current time?
+		double predictedLeadVelocity = oldLeadJerk * rxnTime*rxnTime / 2.0 + oldLeadAcceleration * rxnTime + oldLeadVelocity;
+		double expectedSafeDist = TrafficModel.safeDistance(config, predictedLeadVelocity);
+		
+		if (expectedSafeDist >= oldLeadPosition - oldPosition){
+			brake(car, acceleration, jerk, timeStep);
+		} else if (oldLeadVelocity < oldVelocity) {
+			double expectedBrakingDist = firstOrderDist(oldVelocity, oldLeadVelocity, oldAcceleration, -maxJerk);
+			if (expectedSafeDist + expectedBrakingDist >= oldLeadPosition - oldPosition) {
+				brake(car, acceleration, jerk, timeStep);
+			} 
+		} else {
+			if (acceleration == maxAccel) {
+				jerk = 0;
+			} else if (acceleration + jerk * timeStep > maxAccel){
+				jerk = (maxAccel - acceleration) / timeStep;
+				acceleration = maxAccel; 
+			} else {
+				jerk = maxJerk;
+				acceleration += jerk * timeStep;
+			}
+			car.setAcceleration(acceleration);
+			car.setJerk(jerk);
+		}
+	}
+	
+	/**
+	 * Brakes with the maximum jerk until reaching MAX_DECEL, both places that brake share it
+	 * (which also keeps step small enough for the JIT to inline into the loop)
+	 */
+	private void brake(CarInstance car, double acceleration, double jerk, double timeStep) {
+		if (acceleration == maxDecel) {
+			jerk = 0;
+		} else if (acceleration + jerk * timeStep < maxDecel){
+			jerk = (maxDecel - acceleration) / timeStep;
+			acceleration = maxDecel;
+		} else {
+			jerk = - maxJerk;
+			acceleration += jerk * timeStep;
+		}
+		car.setAcceleration(acceleration);
+		car.setJerk(jerk);
+	}
+	
+	/**
+	 * Works out distance required to change speed assuming constant jerk
+	 * @param	u	start speed, should be meters/second
+	 * @param	v	end speed, should be meters/second
+	 * @param	a	start acceleration, should be meters/(second^2)
+	 * @return		distance covered when using constant jerk to change speed to desired speed, given in meters
+	 */
+	private static double firstOrderDist(double u, double v, double a, double jerk) {
+		double t = (-a - Math.sqrt(a*a - (double)2 * jerk * (u - v)) ) / jerk;
+		return jerk * Math.pow(t, 3) / (double)6 + a * t*t / (double)2 + u * t;
+	}
+	
+	// Same as FollowingModel's, repeated so this loop only ever calls this model's step
+	@Override
+	public void react(LookBack past, Trajectory leadCar, double leadShift, Trajectory followingCar, CarInstance car, long time, double timeStep) {
+		if (past.read(leadCar, leadShift, followingCar, car, time, timeStep)) {
+			step(car, past.getOldLeadPosition(), past.getOldLeadVelocity(), past.getOldLeadAcceleration(), past.getOldLeadJerk(),
+					past.getOldPosition(), past.getOldVelocity(), past.getOldAcceleration(), past.getLeadPosition(), past.getLeadVelocity(), timeStep);
+		}
+	}
+	
+	@Override
+	public void advance(LookBack past, Trajectory leadCar, Trajectory followingCar, CarInstance car, long untilTime) {
+		long time = followingCar.getLastTime();
+		while (time < untilTime) {
+			react(past, leadCar, 0.0, followingCar, car, time, past.getTimeStep());
+			time = past.move(followingCar, car, time);
+		}
+	}
+}
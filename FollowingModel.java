@@ -0,0 +1,62 @@
+/**
+ * One way for a following car to react to the car in front, i.e. one of the traffic models
+ * Each step the car's values from a reaction time ago, and those of the car in front, are passed in as plain numbers
+ * and the model changes the car's current acceleration (or whichever values it decides on) in place.
+ * Implementations take what they need from the ModelConfig when made, see FollowingModels for how they are made and registered
+ * react() and advance() are where step is called from. The built in models each override them with the same bodies
+ * so every model has its own loop calling only its own step, which the JIT can then inline rather than
+ * going through one call site shared by every model (which stops being inlined as soon as a sweep runs a few models)
+ * @author Benjamin Chant
+ */
+public interface FollowingModel {
+	/**
+	 * Decides the following car's values for this step, TrafficModel then moves the car on using its acceleration
+	 * @param car	the following car's current values, changed in place
+	 * @param oldLeadPosition	lead car position a reaction time ago, should be meters
+	 * @param oldLeadVelocity	lead car velocity a reaction time ago, should be meters/second
+	 * @param oldLeadAcceleration	lead car acceleration a reaction time ago, should be meters/(second^2)
+	 * @param oldLeadJerk	lead car jerk a reaction time ago, should be meters/(second^3)
+	 * @param oldPosition	following car position a reaction time ago, should be meters
+	 * @param oldVelocity	following car velocity a reaction time ago, should be meters/second
+	 * @param oldAcceleration	following car acceleration a reaction time ago, should be meters/(second^2)
+	 * @param leadPosition	lead car position now, should be meters
+	 * @param leadVelocity	lead car velocity now, should be meters/second
+	 * @param timeStep	length of the step, should be seconds
+	 */
+	void step(CarInstance car, double oldLeadPosition, double oldLeadVelocity, double oldLeadAcceleration, double oldLeadJerk,
+			double oldPosition, double oldVelocity, double oldAcceleration, double leadPosition, double leadVelocity, double timeStep);
+	
+	/**
+	 * Decides the following car's values for the step starting at the given time, reading what step needs through past
+	 * Before the reaction time the car just carries on with its jerk
+	 * @param past	reads the values, reused every step
+	 * @param leadCar	motion of the car in front, must reach the time and still hold the instances from a reaction time before
+	 * @param leadShift	added to every position of the car in front, e.g. whole laps of a RingRoad, otherwise 0
+	 * @param followingCar	motion of this car, must reach the time
+	 * @param car	this car at the time, changed in place
+	 * @param time	start of the step, should be in millis
+	 * @param timeStep	length of the step, should be seconds
+	 */
+	default void react(LookBack past, Trajectory leadCar, double leadShift, Trajectory followingCar, CarInstance car, long time, double timeStep) {
+		if (past.read(leadCar, leadShift, followingCar, car, time, timeStep)) {
+			step(car, past.getOldLeadPosition(), past.getOldLeadVelocity(), past.getOldLeadAcceleration(), past.getOldLeadJerk(),
+					past.getOldPosition(), past.getOldVelocity(), past.getOldAcceleration(), past.getLeadPosition(), past.getLeadVelocity(), timeStep);
+		}
+	}
+	
+	/**
+	 * Carries the following car on one TIME_STEP at a time from the last instance of its motion up to the given time
+	 * @param past	reads the values, reused every step
+	 * @param leadCar	motion of the car in front, must already reach at least (untilTime - time step)
+	 * @param followingCar	motion of this car which is appended to
+	 * @param car	this car at the last instance of its motion, changed in place
+	 * @param untilTime	time the following car should reach, should be in millis
+	 */
+	default void advance(LookBack past, Trajectory leadCar, Trajectory followingCar, CarInstance car, long untilTime) {
+		long time = followingCar.getLastTime();
+		while (time < untilTime) {
+			react(past, leadCar, 0.0, followingCar, car, time, past.getTimeStep());
+			time = past.move(followingCar, car, time);
+		}
+	}
+}
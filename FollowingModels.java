@@ -0,0 +1,45 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Keeps track of every FollowingModel by name and makes the right one for a run
+ * Each of the TrafficModel.Model approaches is registered under its own name, new models can be added
+ * with register() and then picked with ModelConfig.setCustomModel() without touching TrafficModel
+ * @author Benjamin Chant
+ */
+public class FollowingModels {
+	private static final Map<String, Function<ModelConfig, FollowingModel>> factories = new ConcurrentHashMap<String, Function<ModelConfig, FollowingModel>>();
+	
+	static {
+		register(TrafficModel.Model.SAFE_DISTANCE.name(), SafeDistanceModel::new);
+		register(TrafficModel.Model.PROPORTIONAL_ACCELERATION.name(), ProportionalAccelerationModel::new);
+		register(TrafficModel.Model.LINEAR_CAR_FOLLOWING.name(), LinearCarFollowingModel::new);
+		register(TrafficModel.Model.KEEPING_UP.name(), KeepingUpModel::new);
+		register(TrafficModel.Model.LINEAR_PREDICION.name(), LinearPredictionModel::new);
+		register(TrafficModel.Model.FIRST_ORDER.name(), FirstOrderModel::new);
+	}
+	
+	/**
+	 * Adds a model, or replaces the one already under that name
+	 * @param name	what the model is picked by
+	 * @param factory	makes the model from the parameters of a run
+	 */
+	public static void register(String name, Function<ModelConfig, FollowingModel> factory) {
+		factories.put(name, factory);
+	}
+	
+	/**
+	 * Makes the model a run has asked for, its custom model if it has one otherwise its Model
+	 * @param config	parameters of the run
+	 * @return		the model, ready to step
+	 */
+	public static FollowingModel create(ModelConfig config) {
+		String name = config.getCustomModel() != null ? config.getCustomModel() : config.getModel().name();
+		Function<ModelConfig, FollowingModel> factory = factories.get(name);
+		if (factory == null) {
+			throw new IllegalArgumentException("No following model registered as " + name);
+		}
+		return factory.apply(config);
+	}
+}
@@ -0,0 +1,86 @@
+import java.util.Arrays;
+
+/**
+ * Keeps track of the gap between each pair of neighbouring cars as the instances arrive, without keeping the motions
+ * The gap is measured between positions, as in ScenarioSummary, so a gap under the VEHICLE_LENGTH is a collision
+ * Works whatever order the cars arrive in for each time, since a gap is only measured once both cars have reached it
+ * @author Benjamin Chant
+ */
+public class GapReducer implements MotionSink {
+	private double[] positions; // Latest position of each car
+	private long[] times; // Time of each car's latest position, millis
+	private boolean[] collided; // Whether each following car has ever been too close to the car in front
+	private double minGap = Double.POSITIVE_INFINITY; // meters
+	private long minGapTime = -1; // millis
+	private int collisions = 0;
+	private long firstCollisionTime = -1; // millis
+	
+	/**
+	 * @param cars	number of cars including the lead car
+	 */
+	public GapReducer(int cars) {
+		positions = new double[cars];
+		times = new long[cars];
+		collided = new boolean[cars];
+		Arrays.fill(times, Long.MIN_VALUE);
+	}
+	
+	@Override
+	public void accept(int car, long time, double position, double velocity, double acceleration, double jerk) {
+		positions[car] = position;
+		times[car] = time;
+		if (car > 0 && times[car - 1] == time) {
+			measure(car, time);
+		}
+		if (car + 1 < times.length && times[car + 1] == time) {
+			measure(car + 1, time);
+		}
+	}
+	
+	/**
+	 * Gap between the car and the one in front, both of which are at the given time
+	 */
+	private void measure(int car, long time) {
+		double gap = positions[car - 1] - positions[car];
+		if (gap < minGap) {
+			minGap = gap;
+			minGapTime = time;
+		}
+		if (gap < TrafficModel.VEHICLE_LENGTH && !collided[car]) {
+			collided[car] = true;
+			collisions++;
+			if (firstCollisionTime < 0) {
+				firstCollisionTime = time;
+			}
+		}
+	}
+	
+	/**
+	 * Getters
+	 */
+	public double getMinGap() {
+		return minGap;
+	}
+	
+	public long getMinGapTime() {
+		return minGapTime;
+	}
+	
+	/**
+	 * Number of following cars which ever got closer than the VEHICLE_LENGTH to the car in front
+	 */
+	public int getCollisions() {
+		return collisions;
+	}
+	
+	/**
+	 * Time of the first collision in millis, or -1 if there wasn't one
+	 */
+	public long getFirstCollisionTime() {
+		return firstCollisionTime;
+	}
+	
+	public boolean isCollided(int car) {
+		return collided[car];
+	}
+}
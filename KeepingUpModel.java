@@ -0,0 +1,50 @@
+/**
+ * Decides which side of the safe distance measurement the vehicle is on and
+ * accelerates in the appropriate direction immeadiately
+ * Uses parameters MAX_DECEL and MAX_ACCEL
+ * @author Benjamin Chant
+ */
+public class KeepingUpModel implements FollowingModel {
+	private final ModelConfig config;
+	private final double maxAccel;
+	private final double maxDecel;
+	
+	public KeepingUpModel(ModelConfig config) {
+		this.config = config;
+		this.maxAccel = config.getMaxAccel();
+		this.maxDecel = config.getMaxDecel();
+	}
+	
+	@Override
+	public void step(CarInstance car, double oldLeadPosition, double oldLeadVelocity, double oldLeadAcceleration, double oldLeadJerk,
+			double oldPosition, double oldVelocity, double oldAcceleration, double leadPosition, double leadVelocity, double timeStep) {
+		double safePosition = oldLeadPosition - TrafficModel.safeDistance(config, oldLeadVelocity);
+		
+		// Not going to bother defining jerk as it would be poorly defined
+		if (safePosition > oldPosition) {
+			car.setAcceleration(maxAccel);
+		} else if (safePosition < oldPosition) {
+			car.setAcceleration(maxDecel);
+		} else {
+			car.setAcceleration(0);
+		}
+	}
+	
+	// Same as FollowingModel's, repeated so this loop only ever calls this model's step
+	@Override
+	public void react(LookBack past, Trajectory leadCar, double leadShift, Trajectory followingCar, CarInstance car, long time, double timeStep) {
+		if (past.read(leadCar, leadShift, followingCar, car, time, timeStep)) {
+			step(car, past.getOldLeadPosition(), past.getOldLeadVelocity(), past.getOldLeadAcceleration(), past.getOldLeadJerk(),
+					past.getOldPosition(), past.getOldVelocity(), past.getOldAcceleration(), past.getLeadPosition(), past.getLeadVelocity(), timeStep);
+		}
+	}
+	
+	@Override
+	public void advance(LookBack past, Trajectory leadCar, Trajectory followingCar, CarInstance car, long untilTime) {
+		long time = followingCar.getLastTime();
+		while (time < untilTime) {
+			react(past, leadCar, 0.0, followingCar, car, time, past.getTimeStep());
+			time = past.move(followingCar, car, time);
+		}
+	}
+}
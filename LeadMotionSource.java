@@ -0,0 +1,60 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Where the lead car's motion comes from when it is made as the run goes rather than all up front,
+ * so only the few instances the following cars look back at are ever held (see StreamingSimulation)
+ * @author Benjamin Chant
+ */
+public interface LeadMotionSource {
+	/**
+	 * Works the lead car out straight from the time where the config's Case allows it (CONSTANT_VELOCITY, OSCILLATORY),
+	 * otherwise steps it on the same way as TrafficModel.advanceLeadCar()
+	 * @param config	parameters of the run
+	 */
+	static LeadMotionSource create(ModelConfig config) {
+		if (ClosedFormLeadMotion.supports(config.getCase())) {
+			return new ClosedFormLeadMotion(config);
+		}
+		return new SteppedLeadMotion(config);
+	}
+	
+	/**
+	 * The lead car named by a lead= option
+	 * @param lead	"closed" for create() (which still steps the Cases with no closed form), "stepped" for a SteppedLeadMotion, anything else is a file for recorded()
+	 * @param config	parameters of the run
+	 * @throws IOException	if the lead is a file which can't be opened
+	 */
+	static LeadMotionSource parse(String lead, ModelConfig config) throws IOException {
+		switch (lead) {
+		case "closed":
+			return create(config);
+		case "stepped":
+			return new SteppedLeadMotion(config);
+		default:
+			return recorded(new File(lead));
+		}
+	}
+	
+	/**
+	 * A lead car recorded earlier, read from the disk as it is needed
+	 * @param file	a text file as written by writeCarMotionToFile() or a TrajectoryFile, whose first car is used
+	 * @throws IOException	if the file can't be opened
+	 */
+	static RecordedLeadMotion recorded(File file) throws IOException {
+		return new RecordedLeadMotion(file);
+	}
+	
+	/**
+	 * Appends the lead car's instance at time 0
+	 * @param leadCar	empty motion of the lead car
+	 */
+	void start(Trajectory leadCar);
+	
+	/**
+	 * Carries on the motion of the lead car from its last instance up to the given time
+	 * @param leadCar	motion of the lead car which is appended to
+	 * @param untilTime	time the lead car should reach, should be in millis
+	 */
+	void advance(Trajectory leadCar, long untilTime);
+}
@@ -0,0 +1,38 @@
+/**
+ * Uses the proportionality constant to describe the acceleration of the
+ * following vehicle as proportional to the relative velocity to the lead vehicle
+ * Uses parameter LAMBDA
+ * @author Benjamin Chant
+ */
+public class LinearCarFollowingModel implements FollowingModel {
+	private final double lambda;
+	
+	public LinearCarFollowingModel(ModelConfig config) {
+		this.lambda = config.getLambda();
+	}
+	
+	@Override
+	public void step(CarInstance car, double oldLeadPosition, double oldLeadVelocity, double oldLeadAcceleration, double oldLeadJerk,
+			double oldPosition, double oldVelocity, double oldAcceleration, double leadPosition, double leadVelocity, double timeStep) {
+		// Not going to bother defining jerk as it's not involved yet
+		car.setAcceleration(lambda * (oldLeadVelocity - oldVelocity));
+	}
+	
+	// Same as FollowingModel's, repeated so this loop only ever calls this model's step
+	@Override
+	public void react(LookBack past, Trajectory leadCar, double leadShift, Trajectory followingCar, CarInstance car, long time, double timeStep) {
+		if (past.read(leadCar, leadShift, followingCar, car, time, timeStep)) {
+			step(car, past.getOldLeadPosition(), past.getOldLeadVelocity(), past.getOldLeadAcceleration(), past.getOldLeadJerk(),
+					past.getOldPosition(), past.getOldVelocity(), past.getOldAcceleration(), past.getLeadPosition(), past.getLeadVelocity(), timeStep);
+		}
+	}
+	
+	@Override
+	public void advance(LookBack past, Trajectory leadCar, Trajectory followingCar, CarInstance car, long untilTime) {
+		long time = followingCar.getLastTime();
+		while (time < untilTime) {
+			react(past, leadCar, 0.0, followingCar, car, time, past.getTimeStep());
+			time = past.move(followingCar, car, time);
+		}
+	}
+}
@@ -0,0 +1,69 @@
+/**
+ * Similar to KEEPING_UP but uses a prediction for the distance required to match speed
+ * in the aim of not overshooting
+ * Uses parameters MAX_DECEL and MAX_ACCEL
+ * @author Benjamin Chant
+ */
+public class LinearPredictionModel implements FollowingModel {
+	private final ModelConfig config;
+	private final double maxAccel;
+	private final double maxDecel;
+	
+	public LinearPredictionModel(ModelConfig config) {
+		this.config = config;
+		this.maxAccel = config.getMaxAccel();
+		this.maxDecel = config.getMaxDecel();
+	}
+	
+	@Override
+	public void step(CarInstance car, double oldLeadPosition, double oldLeadVelocity, double oldLeadAcceleration, double oldLeadJerk,
+			double oldPosition, double oldVelocity, double oldAcceleration, double leadPosition, double leadVelocity, double timeStep) {
+		double safePosition = oldLeadPosition - TrafficModel.safeDistance(config, oldLeadVelocity);
+		
+		// Not going to bother defining jerk as it would be poorly defined
+		if (oldVelocity > oldLeadVelocity) {
+			// Require that following vehicle is going faster so that inputting the acceleration as maxDecel makes sense
+			double brakingDist = linearAccelerationDist(oldVelocity, oldLeadVelocity, maxDecel);
+			if (oldPosition >= safePosition - brakingDist) {
+				car.setAcceleration(maxDecel);
+			}
+		} else if (oldVelocity < oldLeadVelocity) {
+			if (oldPosition < safePosition) {
+				car.setAcceleration(maxAccel);
+			}
+		} else {
+			car.setAcceleration(0);
+		}
+	}
+	
+	/**
+	 * Works out distance reqiured to change speed assuming a constant acceleration or linear change in velocity
+	 * uses the SUVAT/Kinematic equation V^2 - U^2 = 2 * A * S
+	 * with V-endSpeed, U-startSpeed, A-acceleration, S-distance
+	 * @param	startSpeed	initial velocity of the vehicle, should be meters/second
+	 * @param	endSpeed	final, target velocity of the vehicle, should be meters/second
+	 * @param	acceleration	the constant acceleration, should be meters/(second^2)
+	 * @return		distance covered when using a constant acceleration to change speed, given in meters
+	 */
+	private static double linearAccelerationDist(double startSpeed, double endSpeed, double acceleration) {
+		return (endSpeed*endSpeed - startSpeed*startSpeed) / ((double)2 *acceleration);
+	}
+	
+	// Same as FollowingModel's, repeated so this loop only ever calls this model's step
+	@Override
+	public void react(LookBack past, Trajectory leadCar, double leadShift, Trajectory followingCar, CarInstance car, long time, double timeStep) {
+		if (past.read(leadCar, leadShift, followingCar, car, time, timeStep)) {
+			step(car, past.getOldLeadPosition(), past.getOldLeadVelocity(), past.getOldLeadAcceleration(), past.getOldLeadJerk(),
+					past.getOldPosition(), past.getOldVelocity(), past.getOldAcceleration(), past.getLeadPosition(), past.getLeadVelocity(), timeStep);
+		}
+	}
+	
+	@Override
+	public void advance(LookBack past, Trajectory leadCar, Trajectory followingCar, CarInstance car, long untilTime) {
+		long time = followingCar.getLastTime();
+		while (time < untilTime) {
+			react(past, leadCar, 0.0, followingCar, car, time, past.getTimeStep());
+			time = past.move(followingCar, car, time);
+		}
+	}
+}
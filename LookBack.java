@@ -0,0 +1,148 @@
+/**
+ * Reads everything a FollowingModel decides a step from: the car in front and the following car a reaction time ago,
+ * and the car in front now. One is made per run (or per road) and reused every step, so nothing is allocated
+ * Reaction times between two TIME_STEPs (e.g. drivers from DriverPopulation) are read off a straight line
+ * between the instances either side
+ * @author Benjamin Chant
+ */
+public class LookBack {
+	private final long timeStepMillis;
+	private final long rxnTimeMillis;
+	private final double timeStep;
+	private final boolean offGrid;
+	
+	private double oldLeadPosition;
+	private double oldLeadVelocity;
+	private double oldLeadAcceleration;
+	private double oldLeadJerk;
+	private double oldPosition;
+	private double oldVelocity;
+	private double oldAcceleration;
+	private double leadPosition;
+	private double leadVelocity;
+	
+	/**
+	 * @param config	parameters of the run, uses the TIME_STEP and reaction time
+	 */
+	public LookBack(ModelConfig config) {
+		this.timeStepMillis = config.getTimeStep();
+		this.rxnTimeMillis = config.getReactionTime();
+		this.timeStep = (double)timeStepMillis / 1000.0; // Convert to seconds for ease
+		this.offGrid = rxnTimeMillis % timeStepMillis != 0;
+	}
+	
+	/**
+	 * Reads the values for the step starting at the given time
+	 * For positive reaction times cannot say anything about that first time interval, so there the car just
+	 * carries on with its jerk and nothing is read
+	 * @param leadCar	motion of the car in front, must reach the time and still hold the instances from a reaction time before
+	 * @param leadShift	added to every position of the car in front, e.g. whole laps of a RingRoad, otherwise 0
+	 * @param followingCar	motion of this car, must reach the time
+	 * @param car	this car at the time, its acceleration is changed before the reaction time
+	 * @param time	start of the step, should be in millis
+	 * @param stepSeconds	length of the step, should be seconds
+	 * @return		true if the values were read and the model should be run, false before the reaction time
+	 */
+	public boolean read(Trajectory leadCar, double leadShift, Trajectory followingCar, CarInstance car, long time, double stepSeconds) {
+		if (time < rxnTimeMillis) {
+			car.setAcceleration(car.getAcceleration() + car.getJerk() * stepSeconds);
+			return false;
+		}
+		long oldTime = time - rxnTimeMillis;
+		if (offGrid) {
+			readBetween(leadCar, leadShift, followingCar, oldTime);
+		} else {
+			// All variables describing the lead car (RXN_TIME) ago and the following car (RXN_TIME) ago (no old jerk needed :) )
+			oldLeadPosition = leadCar.getPosition(oldTime) + leadShift;
+			oldLeadVelocity = leadCar.getVelocity(oldTime);
+			oldLeadAcceleration = leadCar.getAcceleration(oldTime);
+			oldLeadJerk = leadCar.getJerk(oldTime);
+			oldPosition = followingCar.getPosition(oldTime);
+			oldVelocity = followingCar.getVelocity(oldTime);
+			oldAcceleration = followingCar.getAcceleration(oldTime);
+		}
+		leadPosition = leadCar.getPosition(time) + leadShift;
+		leadVelocity = leadCar.getVelocity(time);
+		return true;
+	}
+	
+	/**
+	 * Same as read but for a reaction time landing between two instances, kept apart so read stays small enough to inline
+	 */
+	private void readBetween(Trajectory leadCar, double leadShift, Trajectory followingCar, long oldTime) {
+		long before = oldTime - oldTime % timeStepMillis;
+		long after = before + timeStepMillis;
+		double fraction = (double)(oldTime - before) / (double)timeStepMillis;
+		oldLeadPosition = interpolate(leadCar.getPosition(before), leadCar.getPosition(after), fraction) + leadShift;
+		oldLeadVelocity = interpolate(leadCar.getVelocity(before), leadCar.getVelocity(after), fraction);
+		oldLeadAcceleration = interpolate(leadCar.getAcceleration(before), leadCar.getAcceleration(after), fraction);
+		oldLeadJerk = interpolate(leadCar.getJerk(before), leadCar.getJerk(after), fraction);
+		oldPosition = interpolate(followingCar.getPosition(before), followingCar.getPosition(after), fraction);
+		oldVelocity = interpolate(followingCar.getVelocity(before), followingCar.getVelocity(after), fraction);
+		oldAcceleration = interpolate(followingCar.getAcceleration(before), followingCar.getAcceleration(after), fraction);
+	}
+	
+	/**
+	 * Value a fraction of the way along a straight line from one value to another
+	 */
+	private static double interpolate(double before, double after, double fraction) {
+		return before + (after - before) * fraction;
+	}
+	
+	/**
+	 * Moves the car on one TIME_STEP with the acceleration the model gave it and appends it to its motion
+	 * @param followingCar	motion of this car which is appended to
+	 * @param car	this car, its velocity and position are changed
+	 * @param time	start of the step, should be in millis
+	 * @return		end of the step, should be in millis
+	 */
+	public long move(Trajectory followingCar, CarInstance car, long time) {
+		TrafficModel.moveCar(car, timeStep);
+		time += timeStepMillis;
+		followingCar.appendInstance(car.getPosition(), car.getVelocity(), car.getAcceleration(), car.getJerk(), time);
+		return time;
+	}
+	
+	/**
+	 * Getters
+	 */
+	public double getTimeStep() {
+		return timeStep;
+	}
+	
+	public double getOldLeadPosition() {
+		return oldLeadPosition;
+	}
+	
+	public double getOldLeadVelocity() {
+		return oldLeadVelocity;
+	}
+	
+	public double getOldLeadAcceleration() {
+		return oldLeadAcceleration;
+	}
+	
+	public double getOldLeadJerk() {
+		return oldLeadJerk;
+	}
+	
+	public double getOldPosition() {
+		return oldPosition;
+	}
+	
+	public double getOldVelocity() {
+		return oldVelocity;
+	}
+	
+	public double getOldAcceleration() {
+		return oldAcceleration;
+	}
+	
+	public double getLeadPosition() {
+		return leadPosition;
+	}
+	
+	public double getLeadVelocity() {
+		return leadVelocity;
+	}
+}
@@ -0,0 +1,129 @@
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Times the parts of a run (lead car, each following car, writing files, building the animation...)
+ * recording the wall time, steps done and bytes allocated for each one, both as a PhaseEvent for JFR
+ * and as running totals which are printed when the program ends.
+ * Only switched on with -Dtrafficmodel.metrics=true, otherwise ENABLED is a constant false
+ * and the JIT removes the calls altogether
+ * @author Benjamin Chant
+ */
+public class Metrics {
+	public static final boolean ENABLED = Boolean.getBoolean("trafficmodel.metrics");
+	
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+	private static final Map<String, Totals> totals = new ConcurrentHashMap<String, Totals>();
+	private static final LongAdder lookups = new LongAdder();
+	
+	static {
+		if (ENABLED) {
+			Runtime.getRuntime().addShutdownHook(new Thread(Metrics::printSummary));
+		}
+	}
+	
+	/**
+	 * A phase which has been started but not ended, must be ended on the same thread it was started on
+	 */
+	public static class Phase {
+		private String name;
+		private int car;
+		private long startNanos;
+		private long startBytes;
+		private PhaseEvent event = new PhaseEvent();
+		
+		private Phase(String name, int car) {
+			this.name = name;
+			this.car = car;
+			event.begin();
+			startBytes = THREADS.getCurrentThreadAllocatedBytes();
+			startNanos = System.nanoTime();
+		}
+	}
+	
+	/**
+	 * Running totals for every phase with the same name
+	 */
+	private static class Totals {
+		private long calls;
+		private long nanos;
+		private long steps;
+		private long bytes;
+		
+		private synchronized void add(long nanos, long steps, long bytes) {
+			this.calls++;
+			this.nanos += nanos;
+			this.steps += steps;
+			this.bytes += bytes;
+		}
+	}
+	
+	/**
+	 * Starts timing a phase
+	 * @param name	what the phase is, e.g. "follower"
+	 * @param car	index of the car the phase is for, 0 being the lead car, or -1
+	 * @return		the phase to pass to end(), null when metrics are switched off
+	 */
+	public static Phase begin(String name, int car) {
+		if (!ENABLED) {
+			return null;
+		}
+		return new Phase(name, car);
+	}
+	
+	/**
+	 * Stops timing a phase and records it
+	 * @param phase	from begin(), may be null
+	 * @param steps	number of time steps (or lines, frames...) the phase did
+	 */
+	public static void end(Phase phase, long steps) {
+		if (phase == null) {
+			return;
+		}
+		long nanos = System.nanoTime() - phase.startNanos;
+		long bytes = THREADS.getCurrentThreadAllocatedBytes() - phase.startBytes;
+		
+		PhaseEvent event = phase.event;
+		event.end();
+		if (event.shouldCommit()) {
+			event.phase = phase.name;
+			event.car = phase.car;
+			event.steps = steps;
+			event.allocatedBytes = bytes;
+			event.commit();
+		}
+		
+		totals.computeIfAbsent(phase.name, name -> new Totals()).add(nanos, steps, bytes);
+		if (phase.car >= 0) {
+			totals.computeIfAbsent(phase.name + " car " + phase.car, name -> new Totals()).add(nanos, steps, bytes);
+		}
+	}
+	
+	/**
+	 * Counts a lookup of a motion by time, these are too quick to be timed one by one
+	 */
+	public static void countLookup() {
+		if (ENABLED) {
+			lookups.increment();
+		}
+	}
+	
+	/**
+	 * Prints a table of the totals so far, one line per phase then one per phase of each car
+	 */
+	public static void printSummary() {
+		System.out.println(String.format("%-24s %8s %12s %14s %14s %16s %10s", "phase", "calls", "wall ms", "steps", "steps/s", "allocated", "bytes/step"));
+		for (Map.Entry<String, Totals> entry : new TreeMap<String, Totals>(totals).entrySet()) {
+			Totals phase = entry.getValue();
+			synchronized (phase) {
+				double seconds = phase.nanos / 1e9;
+				System.out.println(String.format("%-24s %8d %12.3f %14d %14.0f %16d %10.2f", entry.getKey(), phase.calls, phase.nanos / 1e6,
+						phase.steps, seconds > 0 ? phase.steps / seconds : 0.0, phase.bytes, phase.steps > 0 ? (double)phase.bytes / phase.steps : 0.0));
+			}
+		}
+		System.out.println(String.format("%-24s %8d", "lookups", lookups.sum()));
+	}
+}
@@ -0,0 +1,123 @@
+/**
+ * Class to contain the parameters of a single run of the model
+ * Starts with the defaults from TrafficModel, so only the ones being changed need setting.
+ * Each run should have its own ModelConfig so that runs can go side by side without interfering
+ * @author Benjamin Chant
+ */
+public class ModelConfig {
+	private TrafficModel.Case currentCase = TrafficModel.CURRENT_CASE;
+	private TrafficModel.Model model = TrafficModel.CHOSEN_MODEL;
+	private String customModel = null; // Name of a model registered with FollowingModels, used instead of model when set
+	private long timeStep = TrafficModel.TIME_STEP; // millis
+	private long runTime = TrafficModel.RUN_TIME; // millis
+	private long reactionTime = TrafficModel.RXN_TIME; // millis
+	private double maxDecel = TrafficModel.MAX_DECEL; // meter/(second^2)
+	private double maxAccel = TrafficModel.MAX_ACCEL; // meter/(second^2)
+	private double maxJerk = TrafficModel.MAX_JERK; // meter/(second^3)
+	private double lambda = TrafficModel.LAMBDA;
+	
+	public ModelConfig() {
+	}
+	
+	/**
+	 * Copies every parameter of another config, handy for making one scenario from another
+	 * @param other
+	 */
+	public ModelConfig(ModelConfig other) {
+		this.currentCase = other.currentCase;
+		this.model = other.model;
+		this.customModel = other.customModel;
+		this.timeStep = other.timeStep;
+		this.runTime = other.runTime;
+		this.reactionTime = other.reactionTime;
+		this.maxDecel = other.maxDecel;
+		this.maxAccel = other.maxAccel;
+		this.maxJerk = other.maxJerk;
+		this.lambda = other.lambda;
+	}
+	
+	/**
+	 * Number of instances in a full run, including the one at time 0
+	 */
+	public int getSampleCount() {
+		return (int)(runTime / timeStep) + 1;
+	}
+	
+	@Override
+	public String toString() {
+		return (customModel != null ? customModel : model.name()) + " " + currentCase + " " + lambda + " " + reactionTime + " " + maxAccel + " " + maxDecel + " " + maxJerk;
+	}
+	
+	/**
+	 * Getters and Setters
+	 */
+	public TrafficModel.Case getCase() {
+		return currentCase;
+	}
+	public void setCase(TrafficModel.Case currentCase) {
+		this.currentCase = currentCase;
+	}
+	
+	public TrafficModel.Model getModel() {
+		return model;
+	}
+	public void setModel(TrafficModel.Model model) {
+		this.model = model;
+	}
+	
+	public String getCustomModel() {
+		return customModel;
+	}
+	public void setCustomModel(String customModel) {
+		this.customModel = customModel;
+	}
+	
+	public long getTimeStep() {
+		return timeStep;
+	}
+	public void setTimeStep(long timeStep) {
+		this.timeStep = timeStep;
+	}
+	
+	public long getRunTime() {
+		return runTime;
+	}
+	public void setRunTime(long runTime) {
+		this.runTime = runTime;
+	}
+	
+	public long getReactionTime() {
+		return reactionTime;
+	}
+	public void setReactionTime(long reactionTime) {
+		this.reactionTime = reactionTime;
+	}
+	
+	public double getMaxDecel() {
+		return maxDecel;
+	}
+	public void setMaxDecel(double maxDecel) {
+		this.maxDecel = maxDecel;
+	}
+	
+	public double getMaxAccel() {
+		return maxAccel;
+	}
+	public void setMaxAccel(double maxAccel) {
+		this.maxAccel = maxAccel;
+	}
+	
+	public double getMaxJerk() {
+		return maxJerk;
+	}
+	public void setMaxJerk(double maxJerk) {
+		this.maxJerk = maxJerk;
+	}
+	
+	public double getLambda() {
+		return lambda;
+	}
+	public void setLambda(double lambda) {
+		this.lambda = lambda;
+	}
+}
@@ -0,0 +1,230 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes many cars' motions out to text files at once, in exactly the same format as CarMotion.writeCarMotionToFile() always has
+ * 	time pos vel acc jerk
+ * Each car is formatted on its own thread into a reusable buffer, a line at a time through one reused StringBuilder
+ * (whose append(double) gives the same digits as String.valueOf without making a String), and full buffers are written
+ * straight to a FileChannel. If asked, the buffers are instead passed on to a second set of threads which gzip them,
+ * so formatting and compressing happen at the same time
+ * @author Benjamin Chant
+ */
+public class MotionExporter {
+	private static final int BUFFER_BYTES = 1 << 16;
+	private static final int BUFFERS_PER_FILE = 4; // When compressing, how far formatting can get ahead of compressing
+	static final int MAX_LINE_BYTES = 128; // A long and four doubles (at most 20 and 24 characters each), spaces and a line separator
+	private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+	private static final ByteBuffer END = ByteBuffer.allocate(0); // Tells the compressing thread there are no more buffers
+	
+	public static void main(String args[]) {
+		int followers = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		boolean gzip = args.length > 2 && args[2].equals("gzip");
+		File directory = new File(args.length > 3 ? args[3] : "export");
+		directory.mkdirs();
+		
+		ModelConfig config = new ModelConfig();
+		CarMotion leadCar = TrafficModel.generateLeadCar(config);
+		CarMotion[] cars = Platoon.generate(config, leadCar, Platoon.evenlySpaced(followers, 20.0, 20.0), threads);
+		File[] files = new File[cars.length];
+		for (int i = 0; i < files.length; i++) {
+			files[i] = new File(directory, "car" + i + (gzip ? ".txt.gz" : ".txt"));
+		}
+		
+		long start = System.nanoTime();
+		write(cars, files, threads, gzip);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(cars.length + " cars written to " + directory + " on " + threads + " threads in " + seconds + " s ("
+				+ (long)(cars.length * leadCar.size() / seconds) + " lines/s)");
+	}
+	
+	/**
+	 * Writes each car to its file, only returning once every file has been finished or has failed
+	 * @param cars	the motions to write
+	 * @param files	file for each car, in the same order
+	 * @param threads	number of cars formatted at once (and compressed at once if gzip)
+	 * @param gzip	whether to gzip the files
+	 */
+	public static void write(CarMotion[] cars, File[] files, int threads, boolean gzip) {
+		if (cars.length != files.length) {
+			throw new IllegalArgumentException("Need one file for every car");
+		}
+		ExecutorService formatters = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, cars.length)));
+		ExecutorService compressors = gzip ? Executors.newFixedThreadPool(Math.max(1, Math.min(threads, cars.length))) : null;
+		List<Future<?>> tasks = new ArrayList<Future<?>>();
+		try {
+			for (int i = 0; i < cars.length; i++) {
+				CarMotion car = cars[i];
+				File file = files[i];
+				tasks.add(formatters.submit(() -> {
+					export(car, file, compressors);
+					return null;
+				}));
+			}
+			for (int i = 0; i < tasks.size(); i++) {
+				try {
+					tasks.get(i).get();
+				}
+				catch(ExecutionException ex) {
+					// The other files carry on, so every file is either whole or reported here
+					Throwable cause = ex.getCause() instanceof ExecutionException ? ex.getCause().getCause() : ex.getCause(); // From compressing
+					System.out.println("Error writing to file " + files[i] + ": " + cause);
+				}
+			}
+		}
+		catch(InterruptedException ex) {
+			// Stops the files still being written rather than leaving them going after returning
+			for (Future<?> task : tasks) {
+				task.cancel(true);
+			}
+			Thread.currentThread().interrupt();
+		} finally {
+			formatters.shutdown();
+			if (compressors != null) {
+				compressors.shutdown();
+			}
+		}
+	}
+	
+	/**
+	 * Writes one car to its file on this thread, what CarMotion.writeCarMotionToFile() does
+	 */
+	public static void write(CarMotion car, File file) {
+		try {
+			export(car, file, null);
+		}
+		catch(IOException | InterruptedException | ExecutionException ex) {
+			System.out.println("Error writing to file " + file + ": " + ex);
+		}
+	}
+	
+	/**
+	 * Somewhere for a full buffer to go, giving back an empty buffer to carry on formatting into
+	 */
+	private interface Drain {
+		ByteBuffer drain(ByteBuffer full) throws IOException, InterruptedException, ExecutionException;
+	}
+	
+	private static void export(CarMotion car, File file, ExecutorService compressors) throws IOException, InterruptedException, ExecutionException {
+		Metrics.Phase phase = Metrics.begin("export", -1);
+		if (compressors == null) {
+			try (FileChannel channel = open(file)) {
+				format(car, ByteBuffer.allocate(BUFFER_BYTES), full -> {
+					full.flip();
+					while (full.hasRemaining()) {
+						channel.write(full);
+					}
+					full.clear();
+					return full;
+				});
+			}
+		} else {
+			BlockingQueue<ByteBuffer> filled = new ArrayBlockingQueue<ByteBuffer>(BUFFERS_PER_FILE + 1);
+			BlockingQueue<ByteBuffer> empty = new ArrayBlockingQueue<ByteBuffer>(BUFFERS_PER_FILE);
+			for (int i = 0; i < BUFFERS_PER_FILE; i++) {
+				empty.add(ByteBuffer.allocate(BUFFER_BYTES));
+			}
+			Future<?> compression = compressors.submit(() -> {
+				try (OutputStream out = new GZIPOutputStream(Channels.newOutputStream(open(file)), BUFFER_BYTES)) {
+					ByteBuffer buffer;
+					while ((buffer = filled.take()) != END) {
+						out.write(buffer.array(), 0, buffer.limit());
+						buffer.clear();
+						empty.put(buffer);
+					}
+				}
+				return null;
+			});
+			
+			try {
+				format(car, take(empty, compression), full -> {
+					full.flip();
+					filled.put(full);
+					return take(empty, compression);
+				});
+				filled.put(END);
+				compression.get();
+			} finally {
+				// Only does anything if formatting stopped early, so the compressing thread isn't left waiting for buffers
+				compression.cancel(true);
+			}
+		}
+		Metrics.end(phase, car.size());
+	}
+	
+	/**
+	 * Waits for an empty buffer, giving up if compressing has stopped with an error
+	 */
+	private static ByteBuffer take(BlockingQueue<ByteBuffer> empty, Future<?> compression) throws InterruptedException, ExecutionException {
+		while (true) {
+			ByteBuffer buffer = empty.poll(100, TimeUnit.MILLISECONDS);
+			if (buffer != null) {
+				return buffer;
+			}
+			if (compression.isDone()) {
+				compression.get();
+				throw new ExecutionException(new IOException("Compressing stopped early"));
+			}
+		}
+	}
+	
+	static FileChannel open(File file) throws IOException {
+		return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+	}
+	
+	/**
+	 * Formats every line of the car into buffers, handing each one to the drain as it fills
+	 */
+	private static void format(CarMotion car, ByteBuffer buffer, Drain drain) throws IOException, InterruptedException, ExecutionException {
+		StringBuilder line = new StringBuilder(MAX_LINE_BYTES);
+		for (int i = 0; i < car.size(); i++) {
+			if (buffer.remaining() < MAX_LINE_BYTES) {
+				buffer = drain.drain(buffer);
+			}
+			putLine(line, buffer, car.getTime(i), car.getPositionAt(i), car.getVelocityAt(i), car.getAccelerationAt(i), car.getJerkAt(i));
+		}
+		if (buffer.position() > 0) {
+			drain.drain(buffer);
+		}
+	}
+	
+	/**
+	 * Formats one line into the buffer, also used by TextFileSink for motions which are streamed rather than kept
+	 * @param line	reused between lines so no Strings are made
+	 * @param buffer	must have at least MAX_LINE_BYTES left
+	 */
+	static void putLine(StringBuilder line, ByteBuffer buffer, long time, double position, double velocity, double acceleration, double jerk) {
+		line.setLength(0);
+		line.append(time).append(' ');
+		line.append(position).append(' ');
+		line.append(velocity).append(' ');
+		line.append(acceleration).append(' ');
+		line.append(jerk);
+		
+		int length = line.length();
+		byte[] bytes = buffer.array();
+		int at = buffer.position();
+		for (int c = 0; c < length; c++) {
+			bytes[at++] = (byte)line.charAt(c); // Only ever digits, '.', '-', 'E', "Infinity" or "NaN"
+		}
+		buffer.position(at);
+		buffer.put(LINE_SEPARATOR);
+	}
+}
@@ -0,0 +1,19 @@
+/**
+ * Somewhere for each car's instances to go as soon as they are worked out, used when the motions are not kept in memory
+ * e.g. writing out to file or keeping running statistics
+ * @author Benjamin Chant
+ */
+public interface MotionSink {
+	/**
+	 * Called once for every instance of every car, each car's instances arrive in order of time
+	 * @param car	index of the car, 0 being the lead car
+	 * @param time	should be in millis
+	 */
+	void accept(int car, long time, double position, double velocity, double acceleration, double jerk);
+	
+	/**
+	 * Called once the run has finished
+	 */
+	default void finish() {
+	}
+}
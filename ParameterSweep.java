@@ -0,0 +1,228 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+/**
+ * Runs the model for every combination of a grid of parameters and writes one summary line per combination
+ * Saves editing and recompiling TrafficModel for each scenario, and since every scenario has its own ModelConfig
+ * they are all run at the same time on a fork-join pool
+ * Run with arguments such as: model=LINEAR_CAR_FOLLOWING,KEEPING_UP case=ALL lambda=0.05,0.1,0.2 rxn=1000,2000 out=sweep.txt
+ * Adding cache=<megabytes> (and spill=<directory>) keeps motions in a TrajectoryCache so scenarios share the lead car
+ * @author Benjamin Chant
+ */
+public class ParameterSweep {
+	// The values to try for each parameter, every combination of these is run
+	private List<TrafficModel.Model> models = Arrays.asList(TrafficModel.Model.values());
+	private List<TrafficModel.Case> cases = Arrays.asList(TrafficModel.Case.values());
+	private List<Double> lambdas = Arrays.asList(TrafficModel.LAMBDA);
+	private List<Long> reactionTimes = Arrays.asList(TrafficModel.RXN_TIME);
+	private List<Double> maxAccels = Arrays.asList(TrafficModel.MAX_ACCEL);
+	private List<Double> maxDecels = Arrays.asList(TrafficModel.MAX_DECEL);
+	private List<Double> maxJerks = Arrays.asList(TrafficModel.MAX_JERK);
+	private long runTime = TrafficModel.RUN_TIME; // millis
+	private int followers = 2; // Same as TrafficModel.run()
+	private TrajectoryCache cache = null; // Shares motions between scenarios when set, otherwise they're streamed and thrown away
+	
+	public static void main(String args[]) {
+		ParameterSweep sweep = new ParameterSweep();
+		int threads = Runtime.getRuntime().availableProcessors();
+		File file = new File("sweep.txt");
+		long cacheMegabytes = 0;
+		File spillDirectory = null;
+		
+		for (String arg : args) {
+			String[] keyValue = arg.split("=", 2);
+			if (keyValue.length != 2) {
+				throw new IllegalArgumentException("Arguments should look like name=value1,value2 but got " + arg);
+			}
+			if (sweep.setParameter(keyValue[0], keyValue[1])) {
+				continue;
+			}
+			switch (keyValue[0]) {
+			case "threads":
+				threads = Integer.parseInt(keyValue[1]);
+				break;
+			case "out":
+				file = new File(keyValue[1]);
+				break;
+			case "cache":
+				cacheMegabytes = Long.parseLong(keyValue[1]);
+				break;
+			case "spill":
+				spillDirectory = new File(keyValue[1]);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown argument " + keyValue[0]);
+			}
+		}
+		
+		if (cacheMegabytes > 0) {
+			sweep.cache = new TrajectoryCache(cacheMegabytes << 20, spillDirectory);
+		}
+		
+		List<ScenarioSummary> summaries = sweep.run(threads);
+		writeSummariesToFile(summaries, file);
+		System.out.println(summaries.size() + " scenarios written to " + file);
+		if (sweep.cache != null) {
+			System.out.println("Cache " + sweep.cache);
+		}
+	}
+	
+	/**
+	 * Sets the values to try for one parameter of the grid, shared with SweepCoordinator
+	 * @param name	model, case, lambda, rxn, accel, decel, jerk, runTime or followers
+	 * @param value	comma separated values, or ALL for every model or case
+	 * @return		false if the name isn't a parameter of the grid
+	 */
+	public boolean setParameter(String name, String value) {
+		String[] values = value.split(",");
+		switch (name) {
+		case "model":
+			models = value.equals("ALL") ? Arrays.asList(TrafficModel.Model.values()) : parseEach(values, TrafficModel.Model::valueOf);
+			return true;
+		case "case":
+			cases = value.equals("ALL") ? Arrays.asList(TrafficModel.Case.values()) : parseEach(values, TrafficModel.Case::valueOf);
+			return true;
+		case "lambda":
+			lambdas = parseEach(values, Double::valueOf);
+			return true;
+		case "rxn":
+			reactionTimes = parseEach(values, Long::valueOf);
+			return true;
+		case "accel":
+			maxAccels = parseEach(values, Double::valueOf);
+			return true;
+		case "decel":
+			maxDecels = parseEach(values, Double::valueOf);
+			return true;
+		case "jerk":
+			maxJerks = parseEach(values, Double::valueOf);
+			return true;
+		case "runTime":
+			runTime = Long.parseLong(value);
+			return true;
+		case "followers":
+			followers = Integer.parseInt(value);
+			return true;
+		default:
+			return false;
+		}
+	}
+	
+	private static <T> List<T> parseEach(String[] values, Function<String, T> parser) {
+		List<T> parsed = new ArrayList<T>();
+		for (String value : values) {
+			parsed.add(parser.apply(value.trim()));
+		}
+		return parsed;
+	}
+	
+	/**
+	 * Makes a ModelConfig for every combination of the parameter values
+	 * @return		one config per scenario, the last parameter changing fastest
+	 */
+	public List<ModelConfig> scenarios() {
+		List<ModelConfig> scenarios = new ArrayList<ModelConfig>();
+		for (TrafficModel.Model model : models) {
+			for (TrafficModel.Case currentCase : cases) {
+				for (double lambda : lambdas) {
+					for (long reactionTime : reactionTimes) {
+						for (double maxAccel : maxAccels) {
+							for (double maxDecel : maxDecels) {
+								for (double maxJerk : maxJerks) {
+									ModelConfig config = new ModelConfig();
+									config.setModel(model);
+									config.setCase(currentCase);
+									config.setLambda(lambda);
+									config.setReactionTime(reactionTime);
+									config.setMaxAccel(maxAccel);
+									config.setMaxDecel(maxDecel);
+									config.setMaxJerk(maxJerk);
+									config.setRunTime(runTime);
+									scenarios.add(config);
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+		return scenarios;
+	}
+	
+	/**
+	 * Runs every scenario at once on a fork-join pool
+	 * @param threads	parallelism of the pool
+	 * @return		the summaries in the same order as scenarios()
+	 */
+	public List<ScenarioSummary> run(int threads) {
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			List<ForkJoinTask<ScenarioSummary>> tasks = new ArrayList<ForkJoinTask<ScenarioSummary>>();
+			for (ModelConfig config : scenarios()) {
+				tasks.add(pool.submit(() -> runScenario(config)));
+			}
+			
+			List<ScenarioSummary> summaries = new ArrayList<ScenarioSummary>();
+			for (ForkJoinTask<ScenarioSummary> task : tasks) {
+				summaries.add(task.join());
+			}
+			return summaries;
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * Runs a single scenario, the lead car and then the chain of following cars
+	 * @param config
+	 * @return		the summary of the run
+	 */
+	public ScenarioSummary runScenario(ModelConfig config) {
+		if (cache != null) {
+			// The lead car, and any cars in front which match an earlier scenario, come out of the cache
+			return ScenarioSummary.fromMotions(config, cache.getPlatoon(config, Platoon.evenlySpaced(followers, 20.0, 20.0)));
+		}
+		
+		// Only the summary is wanted, so the motions are streamed through reducers rather than kept
+		GapReducer gaps = new GapReducer(followers + 1);
+		PeakReducer peaks = new PeakReducer();
+		new StreamingSimulation(config, Platoon.evenlySpaced(followers, 20.0, 20.0), new CombinedSink(gaps, peaks)).run();
+		return ScenarioSummary.fromReducers(config, gaps, peaks);
+	}
+	
+	/**
+	 * Getters
+	 */
+	public int getFollowers() {
+		return followers;
+	}
+	
+	/**
+	 * Writes a header line then one line per summary
+	 * @param summaries
+	 * @param file
+	 */
+	public static void writeSummariesToFile(List<ScenarioSummary> summaries, File file) {
+		try {
+			BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+			writer.write(ScenarioSummary.header());
+			writer.newLine();
+			for (ScenarioSummary summary : summaries) {
+				writer.write(summary.toString());
+				writer.newLine();
+			}
+			writer.close();
+		}
+		catch(IOException ex) {
+			System.out.println("Error writing to file");
+		}
+	}
+}
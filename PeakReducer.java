@@ -0,0 +1,46 @@
+/**
+ * Keeps the largest size of acceleration and of jerk reached by any following car, as the instances arrive
+ * The lead car is left out since its motion is set by the case rather than the model
+ * @author Benjamin Chant
+ */
+public class PeakReducer implements MotionSink {
+	private double maxAcceleration = 0.0; // meter/(second^2)
+	private double maxJerk = 0.0; // meter/(second^3)
+	private int maxJerkCar = -1;
+	private long maxJerkTime = -1; // millis
+	
+	@Override
+	public void accept(int car, long time, double position, double velocity, double acceleration, double jerk) {
+		if (car == 0) {
+			return;
+		}
+		maxAcceleration = Math.max(maxAcceleration, Math.abs(acceleration));
+		if (Math.abs(jerk) > maxJerk) {
+			maxJerk = Math.abs(jerk);
+			maxJerkCar = car;
+			maxJerkTime = time;
+		}
+	}
+	
+	/**
+	 * Getters
+	 */
+	public double getMaxAcceleration() {
+		return maxAcceleration;
+	}
+	
+	public double getMaxJerk() {
+		return maxJerk;
+	}
+	
+	/**
+	 * Car and time of the peak jerk, -1 if no following car ever had any jerk
+	 */
+	public int getMaxJerkCar() {
+		return maxJerkCar;
+	}
+	
+	public long getMaxJerkTime() {
+		return maxJerkTime;
+	}
+}
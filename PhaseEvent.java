@@ -0,0 +1,31 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event recorded for every phase timed by Metrics, so runs can be looked at in JDK Mission Control
+ * e.g. java -Dtrafficmodel.metrics=true -XX:StartFlightRecording=filename=run.jfr Video
+ * @author Benjamin Chant
+ */
+@Name("trafficmodel.Phase")
+@Label("Traffic Model Phase")
+@Category("Traffic Model")
+@Description("One timed part of a run of the traffic model")
+public class PhaseEvent extends Event {
+	@Label("Phase")
+	String phase;
+	
+	@Label("Car")
+	@Description("Index of the car, 0 being the lead car, or -1 when the phase isn't for one car")
+	int car;
+	
+	@Label("Steps")
+	long steps;
+	
+	@Label("Allocated")
+	@DataAmount
+	long allocatedBytes;
+}
@@ -0,0 +1,59 @@
+/**
+ * BatchKernel written as simple counted loops over the scenarios, which the JIT is able to turn into vector instructions itself
+ * @author Benjamin Chant
+ */
+public class PlainBatchKernel implements BatchKernel {
+	
+	@Override
+	public void constantAcceleration(double[] position, double[] velocity, double[] nextPosition, double[] nextVelocity,
+			double acceleration, double timeStep, int count) {
+		double velocityChange = acceleration * timeStep;
+		for (int i = 0; i < count; i++) {
+			double v = velocity[i] + velocityChange;
+			nextVelocity[i] = v;
+			nextPosition[i] = position[i] + v * timeStep;
+		}
+	}
+	
+	@Override
+	public void linearCarFollowing(double[] oldLeadVelocity, double[] oldVelocity, double[] position, double[] velocity,
+			double[] nextPosition, double[] nextVelocity, double[] lambda, double[] maxAcceleration, double timeStep, int count) {
+		for (int i = 0; i < count; i++) {
+			double a = lambda[i] * (oldLeadVelocity[i] - oldVelocity[i]);
+			double v = velocity[i] + a * timeStep;
+			nextVelocity[i] = v;
+			nextPosition[i] = position[i] + v * timeStep;
+			maxAcceleration[i] = Math.max(maxAcceleration[i], Math.abs(a));
+		}
+	}
+	
+	@Override
+	public void proportionalAcceleration(double[] oldLeadPosition, double[] oldLeadVelocity, double[] oldPosition, double[] position, double[] velocity,
+			double[] nextPosition, double[] nextVelocity, double[] lambda, double[] maxAcceleration, ModelConfig config, double timeStep, int count) {
+		double rxnTime = (double)config.getReactionTime();
+		double twoMaxDecel = 2.0 * config.getMaxDecel();
+		double maxAccel = config.getMaxAccel();
+		double maxDecel = config.getMaxDecel();
+		for (int i = 0; i < count; i++) {
+			double leadV = oldLeadVelocity[i];
+			double safeDistance = TrafficModel.VEHICLE_LENGTH + leadV * rxnTime / 1000.0 - leadV*leadV / twoMaxDecel;
+			double a = lambda[i] * ((oldLeadPosition[i] - safeDistance) - oldPosition[i]);
+			if (a > maxAccel) {
+				a = maxAccel;
+			} else if (a < maxDecel) {
+				a = maxDecel;
+			}
+			double v = velocity[i] + a * timeStep;
+			nextVelocity[i] = v;
+			nextPosition[i] = position[i] + v * timeStep;
+			maxAcceleration[i] = Math.max(maxAcceleration[i], Math.abs(a));
+		}
+	}
+	
+	@Override
+	public void minGap(double[] leadPosition, double[] position, double[] minGap, int count) {
+		for (int i = 0; i < count; i++) {
+			minGap[i] = Math.min(minGap[i], leadPosition[i] - position[i]);
+		}
+	}
+}
@@ -0,0 +1,197 @@
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Builds the motion of a whole line of cars behind a lead car rather than the fixed two in TrafficModel.run()
+ * A car only looks back at the car in front, so once the car in front has finished a stretch of time
+ * the car behind can do the same stretch, meaning many cars can be worked on at once in a "wavefront"
+ * @author Benjamin Chant
+ */
+public class Platoon {
+
+	public static void main(String args[]) throws IOException {
+		int followers = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+		ModelConfig config = new ModelConfig();
+		double[] offsets = evenlySpaced(followers, 20.0, 30.0);
+
+		// closed, stepped or a recorded file makes the lead car as the followers go rather than all of it first
+		CarMotion[] cars;
+		long start;
+		if (args.length > 2) {
+			LeadMotionSource leadSource = LeadMotionSource.parse(args[2], config);
+			start = System.nanoTime();
+			cars = generate(config, leadSource, offsets, threads);
+			if (leadSource instanceof RecordedLeadMotion) {
+				((RecordedLeadMotion)leadSource).close();
+			}
+		} else {
+			CarMotion leadCar = TrafficModel.generateLeadCar(config);
+			start = System.nanoTime();
+			cars = generate(config, leadCar, offsets, threads);
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		CarMotion leadCar = cars[0];
+		long steps = (long)followers * (leadCar.size() - 1);
+		System.out.println(followers + " following cars on " + threads + " threads took " + seconds + " s (" + (long)(steps / seconds) + " steps/s)");
+		System.out.println("Last car finished at position " + cars[cars.length - 1].getPositionAt(leadCar.size() - 1));
+	}
+
+	/**
+	 * Starting positions for a line of cars each a fixed distance behind the one in front
+	 * @param count	number of following cars
+	 * @param firstOffset	position of the first following car, should be meters
+	 * @param spacing	distance between each following car, should be meters
+	 * @return		the starting positions, first following car first
+	 */
+	public static double[] evenlySpaced(int count, double firstOffset, double spacing) {
+		double[] offsets = new double[count];
+		for (int i = 0; i < count; i++) {
+			offsets[i] = firstOffset - i * spacing;
+		}
+		return offsets;
+	}
+
+	/**
+	 * Runs the model for every following car, each one following the car before it in the array
+	 * Gives exactly the same motions as calling TrafficModel.generateFollowingCar down the chain one at a time
+	 * @param config	parameters of the run, shared by every following car
+	 * @param leadCar	motion of the lead car, which also sets how long the platoon is run for
+	 * @param offsets	starting position of each following car, should be meters
+	 * @param threads	number of threads to share the cars between, 1 just runs the chain in order
+	 * @return		the lead car followed by the motion of each following car
+	 */
+	public static CarMotion[] generate(ModelConfig config, CarMotion leadCar, double[] offsets, int threads) {
+		return generate(sameConfig(config, offsets.length), leadCar, offsets, threads);
+	}
+	
+	/**
+	 * Same as generate(ModelConfig, CarMotion, double[], int) but the lead car is made a block at a time alongside
+	 * the following cars, so the first following car can start as soon as the lead car's first block is done
+	 * rather than once the whole of the lead car is
+	 * @param config	parameters of the run, shared by every following car, which also sets how long the platoon is run for
+	 * @param leadSource	where the lead car's motion comes from, e.g. from LeadMotionSource.parse()
+	 * @return		the lead car followed by the motion of each following car
+	 */
+	public static CarMotion[] generate(ModelConfig config, LeadMotionSource leadSource, double[] offsets, int threads) {
+		// Run up to the first time on the grid at or after the run time, same as generateLeadCar()
+		long timeStep = config.getTimeStep();
+		long runTime = (config.getRunTime() + timeStep - 1) / timeStep * timeStep;
+		CarMotion leadCar = new CarMotion(timeStep, (int)(runTime / timeStep) + 1);
+		leadSource.start(leadCar);
+		return generate(sameConfig(config, offsets.length), leadCar, leadSource, runTime, offsets, threads);
+	}
+	
+	/**
+	 * @return		the config once for each following car
+	 */
+	private static ModelConfig[] sameConfig(ModelConfig config, int followers) {
+		ModelConfig[] followerConfigs = new ModelConfig[followers];
+		for (int i = 0; i < followers; i++) {
+			followerConfigs[i] = config;
+		}
+		return followerConfigs;
+	}
+	
+	/**
+	 * Platoon where each following car can have its own parameters, e.g. drivers from a DriverPopulation
+	 * @param followerConfigs	parameters of each following car, first following car first, all with the lead car's time step
+	 * @param leadCar	motion of the lead car, which also sets how long the platoon is run for
+	 * @param offsets	starting position of each following car, should be meters
+	 * @param threads	number of threads to share the cars between, 1 just runs the chain in order
+	 * @return		the lead car followed by the motion of each following car
+	 */
+	public static CarMotion[] generate(ModelConfig[] followerConfigs, CarMotion leadCar, double[] offsets, int threads) {
+		return generate(followerConfigs, leadCar, null, leadCar.getLastTime(), offsets, threads);
+	}
+	
+	/**
+	 * @param leadCar	motion of the lead car, only started if there is a leadSource
+	 * @param leadSource	carries on the lead car up to the run time, null if the lead car is already all there
+	 * @param runTime	time every car is run up to, should be millis and on the time grid
+	 */
+	private static CarMotion[] generate(ModelConfig[] followerConfigs, CarMotion leadCar, LeadMotionSource leadSource, long runTime,
+			double[] offsets, int threads) {
+		int samples = (int)(runTime / leadCar.getTimeStep()) + 1;
+
+		// Every motion is made big enough up front, so nothing is copied while another thread is reading it
+		CarMotion[] cars = new CarMotion[offsets.length + 1];
+		cars[0] = leadCar;
+		for (int i = 1; i < cars.length; i++) {
+			cars[i] = TrafficModel.startFollowingCar(followerConfigs[i - 1], offsets[i - 1], samples);
+		}
+
+		if (threads <= 1 || followerConfigs.length == 0) {
+			if (leadSource != null) {
+				Metrics.Phase phase = Metrics.begin("lead", 0);
+				leadSource.advance(leadCar, runTime);
+				Metrics.end(phase, samples - 1);
+			}
+			for (int i = 1; i < cars.length; i++) {
+				Metrics.Phase phase = Metrics.begin("follower", i);
+				TrafficModel.advanceFollowingCar(followerConfigs[i - 1], cars[i - 1], cars[i], runTime);
+				Metrics.end(phase, samples - 1);
+			}
+			return cars;
+		}
+
+		// Time is cut into blocks of one reaction time, block b of a car can run once
+		// block b of the car in front and block b-1 of the same car are both done
+		long blockLength = Math.max(followerConfigs[0].getReactionTime(), 100 * leadCar.getTimeStep());
+		int blocks = (int)((runTime + blockLength - 1) / blockLength);
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			CompletableFuture<Void> done = CompletableFuture.completedFuture(null);
+			CompletableFuture<?>[] carInFront = null;
+			CompletableFuture<?> last = done;
+			if (leadSource != null) {
+				// The lead car's blocks only wait on each other
+				carInFront = new CompletableFuture<?>[blocks];
+				for (int b = 0; b < blocks; b++) {
+					long untilTime = Math.min((b + 1) * blockLength, runTime);
+					CompletableFuture<?> previousBlock = b == 0 ? done : carInFront[b - 1];
+					carInFront[b] = previousBlock.thenRunAsync(() -> {
+							long fromTime = leadCar.getLastTime();
+							Metrics.Phase phase = Metrics.begin("lead", 0);
+							leadSource.advance(leadCar, untilTime);
+							Metrics.end(phase, (leadCar.getLastTime() - fromTime) / leadCar.getTimeStep());
+						}, pool);
+				}
+			}
+			for (int i = 1; i < cars.length; i++) {
+				int index = i;
+				ModelConfig config = followerConfigs[i - 1];
+				CarMotion car = cars[i];
+				CarMotion inFront = cars[i - 1];
+				CompletableFuture<?>[] blocksOfCar = new CompletableFuture<?>[blocks];
+				for (int b = 0; b < blocks; b++) {
+					long untilTime = Math.min((b + 1) * blockLength, runTime);
+					CompletableFuture<?> previousBlock = b == 0 ? done : blocksOfCar[b - 1];
+					CompletableFuture<?> blockInFront = carInFront == null ? done : carInFront[b];
+					blocksOfCar[b] = CompletableFuture.allOf(previousBlock, blockInFront)
+							.thenRunAsync(() -> {
+							// Each block is timed on its own, the totals for the car add them back up
+							long fromTime = car.getLastTime();
+							Metrics.Phase phase = Metrics.begin("follower", index);
+							TrafficModel.advanceFollowingCar(config, inFront, car, untilTime);
+							Metrics.end(phase, (untilTime - fromTime) / config.getTimeStep());
+						}, pool);
+					last = blocksOfCar[b];
+				}
+				carInFront = blocksOfCar;
+			}
+
+			// The last block of the last car can only finish once every other block has
+			last.join();
+		} finally {
+			pool.shutdown();
+		}
+
+		return cars;
+	}
+}
@@ -0,0 +1,52 @@
+/**
+ * Uses the proportionality constant to describe the acceleration of the
+ * following vehicle as proportional to the safe distance behind the lead vehicle
+ * Uses parameter LAMBDA (and MAX_DECEL for safe distance)
+ * @author Benjamin Chant
+ */
+public class ProportionalAccelerationModel implements FollowingModel {
+	private final ModelConfig config;
+	private final double lambda;
+	private final double maxAccel;
+	private final double maxDecel;
+	
+	public ProportionalAccelerationModel(ModelConfig config) {
+		this.config = config;
+		this.lambda = config.getLambda();
+		this.maxAccel = config.getMaxAccel();
+		this.maxDecel = config.getMaxDecel();
+	}
+	
+	@Override
+	public void step(CarInstance car, double oldLeadPosition, double oldLeadVelocity, double oldLeadAcceleration, double oldLeadJerk,
+			double oldPosition, double oldVelocity, double oldAcceleration, double leadPosition, double leadVelocity, double timeStep) {
+		double safePosition = oldLeadPosition - TrafficModel.safeDistance(config, oldLeadVelocity);
+		
+		// Not going to bother defining jerk as it's not involved yet
+		double acceleration = lambda * (safePosition - oldPosition);
+		if (acceleration > maxAccel) {
+			acceleration = maxAccel;
+		} else if (acceleration < maxDecel) {
+			acceleration = maxDecel;
+		}
+		car.setAcceleration(acceleration);
+	}
+	
+	// Same as FollowingModel's, repeated so this loop only ever calls this model's step
+	@Override
+	public void react(LookBack past, Trajectory leadCar, double leadShift, Trajectory followingCar, CarInstance car, long time, double timeStep) {
+		if (past.read(leadCar, leadShift, followingCar, car, time, timeStep)) {
+			step(car, past.getOldLeadPosition(), past.getOldLeadVelocity(), past.getOldLeadAcceleration(), past.getOldLeadJerk(),
+					past.getOldPosition(), past.getOldVelocity(), past.getOldAcceleration(), past.getLeadPosition(), past.getLeadVelocity(), timeStep);
+		}
+	}
+	
+	@Override
+	public void advance(LookBack past, Trajectory leadCar, Trajectory followingCar, CarInstance car, long untilTime) {
+		long time = followingCar.getLastTime();
+		while (time < untilTime) {
+			react(past, leadCar, 0.0, followingCar, car, time, past.getTimeStep());
+			time = past.move(followingCar, car, time);
+		}
+	}
+}
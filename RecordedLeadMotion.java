@@ -0,0 +1,149 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * A lead car which was recorded earlier, e.g. a real car's motion or the output of another run,
+ * read from the disk a few instances at a time rather than loading the whole file.
+ * A TrajectoryFile is mapped so it is read straight from where it is, a text file is read a line at a time
+ * @author Benjamin Chant
+ */
+public class RecordedLeadMotion implements LeadMotionSource, AutoCloseable {
+	private Trajectory mapped; // The first car of a TrajectoryFile, null for a text file
+	private long mappedTimeStep; // millis
+	private BufferedReader reader; // Null for a TrajectoryFile
+	private File file;
+	
+	// Next line of the text file not yet appended
+	private boolean pending = false;
+	private long pendingTime; // millis
+	private double pendingPosition;
+	private double pendingVelocity;
+	private double pendingAcceleration;
+	private double pendingJerk;
+	
+	/**
+	 * @param file	a text file as written by writeCarMotionToFile() or a TrajectoryFile, whose first car is used
+	 * @throws IOException	if the file can't be opened
+	 */
+	public RecordedLeadMotion(File file) throws IOException {
+		this.file = file;
+		TrajectoryFile trajectories = null;
+		try {
+			trajectories = TrajectoryFile.open(file);
+		}
+		catch(IOException ex) {
+			// Not a trajectory file so it should be text
+		}
+		if (trajectories != null) {
+			if (trajectories.getCarCount() == 0 || trajectories.getSampleCount() == 0) {
+				throw new IOException(file + " has no cars in it");
+			} else if (trajectories.getStartTime() != 0) {
+				throw new IOException(file + " should start at time 0");
+			}
+			mapped = trajectories.getCar(0);
+			mappedTimeStep = trajectories.getTimeStep();
+		} else {
+			reader = new BufferedReader(new FileReader(file));
+		}
+	}
+	
+	@Override
+	public void start(Trajectory leadCar) {
+		if (mapped != null) {
+			leadCar.appendInstance(mapped.getPosition(0), mapped.getVelocity(0), mapped.getAcceleration(0), mapped.getJerk(0), 0);
+		} else if (!readLine() || pendingTime != 0) {
+			throw new IllegalStateException(file + " should start at time 0");
+		} else {
+			appendPending(leadCar);
+		}
+	}
+	
+	@Override
+	public void advance(Trajectory leadCar, long untilTime) {
+		long lastTime = leadCar.getLastTime();
+		if (mapped != null) {
+			if (untilTime > mapped.getLastTime()) {
+				throw new IllegalStateException(file + " ends at " + mapped.getLastTime() + " ms, before " + untilTime + " ms");
+			}
+			// A file with a different time step to the lead car is found when the lead car takes the instance
+			while (lastTime < untilTime) {
+				long time = lastTime + mappedTimeStep;
+				leadCar.appendInstance(mapped.getPosition(time), mapped.getVelocity(time), mapped.getAcceleration(time), mapped.getJerk(time), time);
+				lastTime = time;
+			}
+			return;
+		}
+		
+		while (lastTime < untilTime) {
+			// Lines from before the lead car's last instance are passed over, e.g. when resuming part way through
+			do {
+				if (!pending && !readLine()) {
+					throw new IllegalStateException(file + " ends before " + untilTime + " ms");
+				}
+				if (pendingTime <= lastTime) {
+					pending = false;
+				}
+			} while (!pending);
+			lastTime = pendingTime;
+			appendPending(leadCar);
+		}
+	}
+	
+	/**
+	 * Getters
+	 */
+	public File getFile() {
+		return file;
+	}
+	
+	/**
+	 * Stops reading the text file, nothing to do for a TrajectoryFile
+	 */
+	@Override
+	public void close() {
+		if (reader != null) {
+			try {
+				reader.close();
+			}
+			catch(IOException ex) {
+				System.out.println("Error closing file");
+			}
+		}
+	}
+	
+	/**
+	 * Reads the next line of the text file into the pending instance
+	 * @return		false at the end of the file
+	 */
+	private boolean readLine() {
+		try {
+			String line;
+			do {
+				line = reader.readLine();
+				if (line == null) {
+					return false;
+				}
+				line = line.trim();
+			} while (line.isEmpty());
+			String[] values = line.split(" ");
+			pendingTime = Long.parseLong(values[0]);
+			pendingPosition = Double.parseDouble(values[1]);
+			pendingVelocity = Double.parseDouble(values[2]);
+			pendingAcceleration = Double.parseDouble(values[3]);
+			pendingJerk = Double.parseDouble(values[4]);
+			pending = true;
+			return true;
+		}
+		catch(IOException ex) {
+			throw new UncheckedIOException("Error reading " + file, ex);
+		}
+	}
+	
+	private void appendPending(Trajectory leadCar) {
+		leadCar.appendInstance(pendingPosition, pendingVelocity, pendingAcceleration, pendingJerk, pendingTime);
+		pending = false;
+	}
+}
@@ -0,0 +1,175 @@
+/**
+ * Class to describe a vehicle's motion by only keeping the most recent instances, as many as the model looks back at
+ * Older instances are overwritten, so every instance is also handed to a MotionSink as it is appended
+ * @author Benjamin Chant
+ */
+public class RingBufferMotion implements Trajectory {
+	private double[] positions;
+	private double[] velocities;
+	private double[] accelerations;
+	private double[] jerks;
+	private long startTime = 0; // millis
+	private long timeStep; // millis
+	private long count = 0; // Total number of instances ever appended
+	private int car;
+	private MotionSink sink;
+	
+	/**
+	 * @param timeStep	spacing of the times in millis
+	 * @param capacity	number of the most recent instances which can be read back
+	 * @param car	index of the car given to the sink
+	 * @param sink	where every appended instance is passed on to, can be null
+	 */
+	public RingBufferMotion(long timeStep, int capacity, int car, MotionSink sink) {
+		this.timeStep = timeStep;
+		this.car = car;
+		this.sink = sink;
+		positions = new double[capacity];
+		velocities = new double[capacity];
+		accelerations = new double[capacity];
+		jerks = new double[capacity];
+	}
+	
+	/**
+	 * Number of instances needed to look back one reaction time from the latest instance,
+	 * rounding up for reaction times which land between two instances
+	 * @param config	parameters of the run
+	 */
+	public static int capacityFor(ModelConfig config) {
+		return (int)((config.getReactionTime() + config.getTimeStep() - 1) / config.getTimeStep()) + 1;
+	}
+	
+	@Override
+	public void appendInstance(double position, double velocity, double acceleration, double jerk, long time) {
+		if (count == 0) {
+			startTime = time;
+		} else if (time != startTime + count * timeStep) {
+			throw new IllegalArgumentException("Time " + time + " is not the next time on the grid, expected " + (startTime + count * timeStep));
+		}
+		
+		int slot = (int)(count % positions.length);
+		positions[slot] = position;
+		velocities[slot] = velocity;
+		accelerations[slot] = acceleration;
+		jerks[slot] = jerk;
+		count++;
+		
+		if (sink != null) {
+			sink.accept(car, time, position, velocity, acceleration, jerk);
+		}
+	}
+	
+	/**
+	 * Converts a time into the slot of the arrays it is stored in
+	 * @param time	should be in millis
+	 * @throws IndexOutOfBoundsException	if the time has not been appended yet or has already been overwritten
+	 */
+	private int slotOf(long time) {
+		long offset = time - startTime;
+		if (offset % timeStep == 0) {
+			long index = offset / timeStep;
+			if (index < count && index >= count - positions.length && index >= 0) {
+				return (int)(index % positions.length);
+			}
+		}
+		throw new IndexOutOfBoundsException("No instance held at time " + time);
+	}
+	
+	@Override
+	public double getPosition(long time) {
+		return positions[slotOf(time)];
+	}
+	
+	@Override
+	public double getVelocity(long time) {
+		return velocities[slotOf(time)];
+	}
+	
+	@Override
+	public double getAcceleration(long time) {
+		return accelerations[slotOf(time)];
+	}
+	
+	@Override
+	public double getJerk(long time) {
+		return jerks[slotOf(time)];
+	}
+	
+	@Override
+	public long getLastTime() {
+		return startTime + (count - 1) * timeStep;
+	}
+	
+	public int getCapacity() {
+		return positions.length;
+	}
+	
+	/**
+	 * Number of instances which can still be read back, at most the capacity
+	 */
+	public int getHeldCount() {
+		return (int)Math.min(count, positions.length);
+	}
+	
+	/**
+	 * Total number of instances ever appended
+	 */
+	public long getCount() {
+		return count;
+	}
+	
+	public long getStartTime() {
+		return startTime;
+	}
+	
+	/**
+	 * Copies out the instances which can still be read back, oldest first, e.g. to save them in a Checkpoint
+	 * @param into	arrays of at least getHeldCount() for positions, velocities, accelerations and jerks
+	 */
+	public void copyHeld(double[] positionsInto, double[] velocitiesInto, double[] accelerationsInto, double[] jerksInto) {
+		int held = getHeldCount();
+		for (int i = 0; i < held; i++) {
+			int slot = (int)((count - held + i) % positions.length);
+			positionsInto[i] = positions[slot];
+			velocitiesInto[i] = velocities[slot];
+			accelerationsInto[i] = accelerations[slot];
+			jerksInto[i] = jerks[slot];
+		}
+	}
+	
+	/**
+	 * Puts back instances copied out by copyHeld(), as if they had been appended but without passing them to the sink
+	 * @param startTime	time of the first instance ever appended, should be in millis
+	 * @param count	total number of instances ever appended
+	 * @param held	number of instances in the arrays, oldest first, the last being instance count - 1
+	 */
+	public void restore(long startTime, long count, int held, double[] positionsFrom, double[] velocitiesFrom,
+			double[] accelerationsFrom, double[] jerksFrom) {
+		if (held > positions.length || held > count) {
+			throw new IllegalArgumentException("Can't hold " + held + " instances");
+		}
+		this.startTime = startTime;
+		this.count = count;
+		for (int i = 0; i < held; i++) {
+			int slot = (int)((count - held + i) % positions.length);
+			positions[slot] = positionsFrom[i];
+			velocities[slot] = velocitiesFrom[i];
+			accelerations[slot] = accelerationsFrom[i];
+			jerks[slot] = jerksFrom[i];
+		}
+	}
+	
+	/**
+	 * Empties the motion so its arrays can be used again for another run
+	 * @param timeStep	spacing of the times in millis
+	 * @param car	index of the car given to the sink
+	 * @param sink	where every appended instance is passed on to, can be null
+	 */
+	public void reset(long timeStep, int car, MotionSink sink) {
+		this.timeStep = timeStep;
+		this.car = car;
+		this.sink = sink;
+		startTime = 0;
+		count = 0;
+	}
+}
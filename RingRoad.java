@@ -0,0 +1,357 @@
+/**
+ * Runs cars round a circular road of one or more lanes, so there is no lead car: every car follows
+ * whichever car is next ahead of it in its lane at that moment, which can change as cars change lane.
+ * Useful for watching stop-and-go waves travel round the road after one car brakes.
+ * Each lane keeps its cars sorted by position round the road, so the car ahead is the next one in the lane (O(1)).
+ * After every step the order is fixed up with an insertion sort, which is almost free since cars rarely pass each other;
+ * a car going past the end of the road moves to the front of its lane, but that only happens every few hundred steps per lane.
+ * Positions kept in each car's motion carry on increasing round the road, only the index uses the position within one lap
+ * @author Benjamin Chant
+ */
+public class RingRoad {
+	private ModelConfig config;
+	private double length; // meters
+	private FollowingModel model;
+	private LookBack past;
+	private RingBufferMotion[] cars;
+	private MotionSink sink;
+	private double[] positions; // Position within one lap, meters
+	private int[] lanes; // Lane of each car
+	private int[][] order; // Cars in each lane sorted by position within one lap
+	private int[] laneSizes;
+	private int[] slots; // Where each car is in its lane's order
+	private long time = 0; // millis
+	
+	// One car brakes to set off a wave
+	private int brakingCar = -1;
+	private long brakeStart; // millis
+	private long brakeEnd; // millis
+	
+	// Lane changes
+	private long laneChangeInterval = 1000; // millis, how often each car thinks about changing lane
+	private double laneChangeGain = 10.0; // meters, how much more room ahead a lane has to have to be worth changing to
+	private long laneChanges = 0;
+	
+	public static void main(String args[]) {
+		ModelConfig config = new ModelConfig();
+		int carCount = 1000;
+		int laneCount = 2;
+		double spacing = 30.0;
+		long brake = 5000;
+		for (String arg : args) {
+			String[] keyValue = arg.split("=", 2);
+			if (keyValue.length != 2) {
+				throw new IllegalArgumentException("Arguments should look like name=value but got " + arg);
+			}
+			switch (keyValue[0]) {
+			case "model":
+				config.setModel(TrafficModel.Model.valueOf(keyValue[1]));
+				break;
+			case "cars":
+				carCount = Integer.parseInt(keyValue[1]);
+				break;
+			case "lanes":
+				laneCount = Integer.parseInt(keyValue[1]);
+				break;
+			case "spacing":
+				spacing = Double.parseDouble(keyValue[1]);
+				break;
+			case "brake":
+				brake = Long.parseLong(keyValue[1]);
+				break;
+			case "runTime":
+				config.setRunTime(Long.parseLong(keyValue[1]));
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown argument " + keyValue[0]);
+			}
+		}
+		
+		// Same room per car whatever the number of lanes
+		double roadLength = spacing * carCount / laneCount;
+		StringStabilityReducer stability = new StringStabilityReducer(carCount);
+		RingRoad road = new RingRoad(config, roadLength, laneCount, carCount, stability);
+		road.setBraking(0, config.getReactionTime(), brake);
+		
+		long start = System.nanoTime();
+		road.run();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		
+		long steps = (long)carCount * (config.getRunTime() / config.getTimeStep());
+		System.out.println(carCount + " cars in " + laneCount + " lanes on a " + roadLength + " m ring took " + seconds + " s ("
+				+ (long)(steps / seconds) + " steps/s)");
+		double minSpread = Double.POSITIVE_INFINITY;
+		double maxSpread = 0.0;
+		for (int car = 0; car < carCount; car++) {
+			minSpread = Math.min(minSpread, stability.getSpread(car));
+			maxSpread = Math.max(maxSpread, stability.getSpread(car));
+		}
+		System.out.println(road.getLaneChanges() + " lane changes, spread of velocity from " + minSpread + " to " + maxSpread + " m/s");
+	}
+	
+	/**
+	 * Spreads the cars evenly round the road, lane by lane, all at the same starting velocity as TrafficModel's following cars
+	 * @param config	parameters of the run, shared by every car
+	 * @param length	distance round the road, should be meters
+	 * @param laneCount	number of lanes
+	 * @param carCount	number of cars
+	 * @param sink	where every instance of every car is sent, can be null
+	 */
+	public RingRoad(ModelConfig config, double length, int laneCount, int carCount, MotionSink sink) {
+		this.config = config;
+		this.length = length;
+		this.model = FollowingModels.create(config);
+		this.past = new LookBack(config);
+		this.sink = sink;
+		
+		// One more instance than StreamingSimulation keeps, so it doesn't matter which order the cars are moved in
+		int capacity = RingBufferMotion.capacityFor(config) + 1;
+		cars = new RingBufferMotion[carCount];
+		positions = new double[carCount];
+		lanes = new int[carCount];
+		slots = new int[carCount];
+		order = new int[laneCount][carCount];
+		laneSizes = new int[laneCount];
+		int perLane = (carCount + laneCount - 1) / laneCount;
+		for (int car = 0; car < carCount; car++) {
+			int lane = car % laneCount;
+			int slot = laneSizes[lane]++;
+			
+			// Lanes are staggered by part of a gap so cars aren't side by side
+			double position = (slot + (double)lane / laneCount) * length / perLane;
+			cars[car] = new RingBufferMotion(config.getTimeStep(), capacity, car, sink);
+			TrafficModel.startFollowingCar(cars[car], position);
+			positions[car] = position;
+			lanes[car] = lane;
+			order[lane][slot] = car;
+			slots[car] = slot;
+		}
+	}
+	
+	/**
+	 * Makes one car brake as hard as it can for a while whatever the model says
+	 * @param car	the car to brake
+	 * @param start	when to start braking, should be millis
+	 * @param duration	how long to brake for, should be millis
+	 */
+	public void setBraking(int car, long start, long duration) {
+		brakingCar = car;
+		brakeStart = start;
+		brakeEnd = start + duration;
+	}
+	
+	/**
+	 * How often each car looks at changing lane, and how much more room it needs to see to do it
+	 * @param interval	should be millis
+	 * @param gain	should be meters
+	 */
+	public void setLaneChanging(long interval, double gain) {
+		laneChangeInterval = interval;
+		laneChangeGain = gain;
+	}
+	
+	/**
+	 * Runs to the config's run time and then finishes the sink
+	 */
+	public void run() {
+		runUntil(config.getRunTime());
+		if (sink != null) {
+			sink.finish();
+		}
+	}
+	
+	/**
+	 * Moves every car on one time step at a time
+	 * @param untilTime	time every car should reach, should be in millis
+	 */
+	public void runUntil(long untilTime) {
+		long timeStepMillis = config.getTimeStep();
+		double timeStep = (double)timeStepMillis / 1000.0; // Convert to seconds for ease
+		CarInstance state = new CarInstance(0.0, 0.0, 0.0, 0.0);
+		Metrics.Phase phase = Metrics.begin("ring", -1);
+		long fromTime = time;
+		while (time < untilTime) {
+			// Every car reads what the others were doing at this time or earlier, so the order they are moved in doesn't matter
+			for (int car = 0; car < cars.length; car++) {
+				RingBufferMotion motion = cars[car];
+				state.setPosition(motion.getPosition(time));
+				state.setVelocity(motion.getVelocity(time));
+				state.setAcceleration(motion.getAcceleration(time));
+				state.setJerk(motion.getJerk(time));
+				
+				if (car == brakingCar && time >= brakeStart && time < brakeEnd) {
+					state.setAcceleration(state.getVelocity() > 0 ? config.getMaxDecel() : 0.0);
+					state.setJerk(0.0);
+				} else {
+					// Moves the car in front's positions by whole laps so it is just ahead of this car
+					RingBufferMotion lead = cars[getLeader(car)];
+					double shift = getGap(car) - (lead.getPosition(time) - state.getPosition());
+					model.react(past, lead, shift, motion, state, time, timeStep);
+				}
+				
+				TrafficModel.moveCar(state, timeStep);
+				motion.appendInstance(state.getPosition(), state.getVelocity(), state.getAcceleration(), state.getJerk(), time + timeStepMillis);
+			}
+			time += timeStepMillis;
+			
+			for (int car = 0; car < cars.length; car++) {
+				positions[car] = wrap(cars[car].getPosition(time));
+			}
+			for (int lane = 0; lane < laneSizes.length; lane++) {
+				sortLane(lane);
+			}
+			if (laneSizes.length > 1 && time % laneChangeInterval == 0) {
+				changeLanes();
+			}
+		}
+		Metrics.end(phase, (time - fromTime) / timeStepMillis * cars.length);
+	}
+	
+	/**
+	 * Insertion sort of one lane by position, only moves cars which have passed the car in front (or gone round the end)
+	 */
+	private void sortLane(int lane) {
+		int[] cars = order[lane];
+		for (int i = 1; i < laneSizes[lane]; i++) {
+			int car = cars[i];
+			double position = positions[car];
+			int j = i;
+			while (j > 0 && positions[cars[j - 1]] > position) {
+				cars[j] = cars[j - 1];
+				slots[cars[j]] = j;
+				j--;
+			}
+			cars[j] = car;
+			slots[car] = j;
+		}
+	}
+	
+	/**
+	 * Each car looks at the lanes either side and moves over if there is clearly more room ahead there
+	 * and it wouldn't be closer than the safe distance to the cars in front or behind
+	 */
+	private void changeLanes() {
+		for (int car = 0; car < cars.length; car++) {
+			if (car == brakingCar && time < brakeEnd) {
+				continue;
+			}
+			int lane = lanes[car];
+			double gapAhead = getGap(car);
+			double velocity = cars[car].getVelocity(time);
+			for (int target = lane - 1; target <= lane + 1; target += 2) {
+				if (target < 0 || target >= laneSizes.length) {
+					continue;
+				}
+				int slot = insertionSlot(target, positions[car]);
+				int size = laneSizes[target];
+				if (size > 0) {
+					int ahead = order[target][slot % size];
+					int behind = order[target][(slot + size - 1) % size];
+					double targetAhead = forward(positions[car], positions[ahead]);
+					double targetBehind = forward(positions[behind], positions[car]);
+					if (targetAhead < gapAhead + laneChangeGain || targetAhead < TrafficModel.safeDistance(config, velocity)
+							|| targetBehind < TrafficModel.safeDistance(config, cars[behind].getVelocity(time))) {
+						continue;
+					}
+				}
+				move(car, target, slot);
+				laneChanges++;
+				break;
+			}
+		}
+	}
+	
+	/**
+	 * First slot of the lane whose car is at or past the position, binary search as the lane is sorted
+	 */
+	private int insertionSlot(int lane, double position) {
+		int low = 0;
+		int high = laneSizes[lane];
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (positions[order[lane][middle]] < position) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+	
+	private void move(int car, int target, int slot) {
+		int lane = lanes[car];
+		int[] from = order[lane];
+		int fromSlot = slots[car];
+		System.arraycopy(from, fromSlot + 1, from, fromSlot, laneSizes[lane] - fromSlot - 1);
+		laneSizes[lane]--;
+		for (int i = fromSlot; i < laneSizes[lane]; i++) {
+			slots[from[i]] = i;
+		}
+		
+		int[] to = order[target];
+		System.arraycopy(to, slot, to, slot + 1, laneSizes[target] - slot);
+		to[slot] = car;
+		laneSizes[target]++;
+		for (int i = slot; i < laneSizes[target]; i++) {
+			slots[to[i]] = i;
+		}
+		lanes[car] = target;
+	}
+	
+	/**
+	 * Distance going forward round the road from one position within a lap to another
+	 */
+	private double forward(double from, double to) {
+		double distance = to - from;
+		return distance < 0 ? distance + length : distance;
+	}
+	
+	private double wrap(double position) {
+		double wrapped = position % length;
+		return wrapped < 0 ? wrapped + length : wrapped;
+	}
+	
+	/**
+	 * The car ahead in the same lane, the car itself if it is alone in its lane
+	 */
+	public int getLeader(int car) {
+		int lane = lanes[car];
+		int slot = slots[car] + 1;
+		return order[lane][slot == laneSizes[lane] ? 0 : slot];
+	}
+	
+	/**
+	 * Distance forward to the car ahead in the same lane, the whole length of the road if it is alone
+	 */
+	public double getGap(int car) {
+		double gap = forward(positions[car], positions[getLeader(car)]);
+		return gap == 0.0 ? length : gap;
+	}
+	
+	/**
+	 * Getters
+	 */
+	public long getTime() {
+		return time;
+	}
+	
+	public int getCarCount() {
+		return cars.length;
+	}
+	
+	public RingBufferMotion getCar(int car) {
+		return cars[car];
+	}
+	
+	public int getLane(int car) {
+		return lanes[car];
+	}
+	
+	public double getLength() {
+		return length;
+	}
+	
+	public long getLaneChanges() {
+		return laneChanges;
+	}
+}
@@ -0,0 +1,40 @@
+/**
+ * Safe Distance model fixes the position and speed of each following vehicle according to the speed of the lead
+ * such that in theory there would be time to break to a stop if the lead vehicle immediately came to rest
+ * Uses parameter MAX_DECEL
+ * @author Benjamin Chant
+ */
+public class SafeDistanceModel implements FollowingModel {
+	private final ModelConfig config;
+	
+	public SafeDistanceModel(ModelConfig config) {
+		this.config = config;
+	}
+	
+	@Override
+	public void step(CarInstance car, double oldLeadPosition, double oldLeadVelocity, double oldLeadAcceleration, double oldLeadJerk,
+			double oldPosition, double oldVelocity, double oldAcceleration, double leadPosition, double leadVelocity, double timeStep) {
+		// No acceleration or jerk terms as they are not relavent to discussion yet
+		double velocity = leadVelocity;
+		car.setVelocity(velocity);
+		car.setPosition(leadPosition - TrafficModel.safeDistance(config, velocity) - velocity * timeStep); // Position later updated
+	}
+	
+	// Same as FollowingModel's, repeated so this loop only ever calls this model's step
+	@Override
+	public void react(LookBack past, Trajectory leadCar, double leadShift, Trajectory followingCar, CarInstance car, long time, double timeStep) {
+		if (past.read(leadCar, leadShift, followingCar, car, time, timeStep)) {
+			step(car, past.getOldLeadPosition(), past.getOldLeadVelocity(), past.getOldLeadAcceleration(), past.getOldLeadJerk(),
+					past.getOldPosition(), past.getOldVelocity(), past.getOldAcceleration(), past.getLeadPosition(), past.getLeadVelocity(), timeStep);
+		}
+	}
+	
+	@Override
+	public void advance(LookBack past, Trajectory leadCar, Trajectory followingCar, CarInstance car, long untilTime) {
+		long time = followingCar.getLastTime();
+		while (time < untilTime) {
+			react(past, leadCar, 0.0, followingCar, car, time, past.getTimeStep());
+			time = past.move(followingCar, car, time);
+		}
+	}
+}
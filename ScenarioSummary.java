@@ -0,0 +1,80 @@
+/**
+ * Class to contain the few numbers of interest from one run of the model, rather than every instance of every car
+ * @author Benjamin Chant
+ */
+public class ScenarioSummary {
+	private ModelConfig config;
+	private double minGap; // meter
+	private double maxAcceleration; // meter/(second^2)
+	private boolean collided;
+	
+	public ScenarioSummary(ModelConfig config, double minGap, double maxAcceleration, boolean collided) {
+		this.config = config;
+		this.minGap = minGap;
+		this.maxAcceleration = maxAcceleration;
+		this.collided = collided;
+	}
+	
+	/**
+	 * Goes through the motion of each car to find the summary values
+	 * The gap is measured between the positions of neighbouring cars, so a gap under the VEHICLE_LENGTH is a collision
+	 * @param config	parameters the cars were run with
+	 * @param cars	lead car first, then each following car behind the one before it
+	 * @return		the summary of the run
+	 */
+	public static ScenarioSummary fromMotions(ModelConfig config, CarMotion[] cars) {
+		double minGap = Double.POSITIVE_INFINITY;
+		double maxAcceleration = 0.0;
+		for (int car = 1; car < cars.length; car++) {
+			CarMotion inFront = cars[car - 1];
+			CarMotion motion = cars[car];
+			for (int i = 0; i < motion.size(); i++) {
+				minGap = Math.min(minGap, inFront.getPositionAt(i) - motion.getPositionAt(i));
+				maxAcceleration = Math.max(maxAcceleration, Math.abs(motion.getAccelerationAt(i)));
+			}
+		}
+		return new ScenarioSummary(config, minGap, maxAcceleration, minGap < TrafficModel.VEHICLE_LENGTH);
+	}
+	
+	/**
+	 * Same as fromMotions() but from reducers which were fed every instance of the run, so no motions needed keeping
+	 * @param config	parameters the cars were run with
+	 * @param gaps	has seen every car
+	 * @param peaks	has seen every car
+	 * @return		the summary of the run
+	 */
+	public static ScenarioSummary fromReducers(ModelConfig config, GapReducer gaps, PeakReducer peaks) {
+		return new ScenarioSummary(config, gaps.getMinGap(), peaks.getMaxAcceleration(), gaps.getCollisions() > 0);
+	}
+	
+	/**
+	 * Names of the columns written by toString(), in the same order
+	 */
+	public static String header() {
+		return "model case lambda rxnTime maxAccel maxDecel maxJerk minGap maxAcceleration collided";
+	}
+	
+	@Override
+	public String toString() {
+		return config + " " + minGap + " " + maxAcceleration + " " + collided;
+	}
+	
+	/**
+	 * Getters
+	 */
+	public ModelConfig getConfig() {
+		return config;
+	}
+	
+	public double getMinGap() {
+		return minGap;
+	}
+	
+	public double getMaxAcceleration() {
+		return maxAcceleration;
+	}
+	
+	public boolean isCollided() {
+		return collided;
+	}
+}
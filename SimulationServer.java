@@ -0,0 +1,362 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Keeps one JVM running and warmed up to run many scenarios, rather than starting a new one per run
+ * Reads one scenario per line, e.g.
+ * id=7 model=KEEPING_UP case=OSCILLATORY lambda=0.1 rxn=1500 accel=2.0 decel=-5.0 jerk=1.0 runTime=60000 followers=10
+ * (any left out keep the defaults in TrafficModel) and writes back one line per scenario as it finishes:
+ * the id, the ScenarioSummary, the peak jerk and the string stability amplification, or the id and "error" and why.
+ * Lines which are empty or start with # are skipped. If the server was started with traj=<directory>, adding traj=<name>
+ * to a scenario also keeps its motions and writes them to that TrajectoryFile in the directory (and nowhere else),
+ * used by SweepCoordinator to gather the binary outputs. lead=closed or lead=stepped picks how the lead car is made
+ * (see LeadMotionSource.parse()), or lead=<name> reads a recorded lead car from that file in the same directory.
+ * Only results go to stdout, anything else the server prints goes to stderr
+ * Run with no arguments to read stdin and write stdout, or port=N to listen on that port of the local machine
+ * where every connection is a separate stream of scenarios. threads=N sets the number of worker threads
+ * @author Benjamin Chant
+ */
+public class SimulationServer {
+	private ExecutorService workers;
+	private File trajectoryDirectory = null; // Where traj= files go, null to not allow them
+	
+	// Each worker thread keeps its simulation, and so its ring buffers, from one scenario to the next
+	private final ThreadLocal<StreamingSimulation> simulations = new ThreadLocal<StreamingSimulation>();
+	
+	public static void main(String args[]) throws IOException {
+		int threads = Runtime.getRuntime().availableProcessors();
+		int port = -1;
+		File trajectoryDirectory = null;
+		for (String arg : args) {
+			String[] keyValue = arg.split("=", 2);
+			if (keyValue.length != 2) {
+				throw new IllegalArgumentException("Arguments should look like name=value but got " + arg);
+			}
+			switch (keyValue[0]) {
+			case "threads":
+				threads = Integer.parseInt(keyValue[1]);
+				break;
+			case "port":
+				port = Integer.parseInt(keyValue[1]);
+				break;
+			case "traj":
+				trajectoryDirectory = new File(keyValue[1]);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown argument " + keyValue[0]);
+			}
+		}
+		
+		SimulationServer server = new SimulationServer(threads);
+		server.setTrajectoryDirectory(trajectoryDirectory);
+		try {
+			if (port < 0) {
+				// Keeps stdout for the results only, so nothing else printed along the way gets mixed in with them
+				PrintStream results = System.out;
+				System.setOut(System.err);
+				server.serve(System.in, results);
+			} else {
+				server.listen(port);
+			}
+		} finally {
+			server.shutdown();
+		}
+	}
+	
+	/**
+	 * @param threads	number of scenarios run at once
+	 */
+	public SimulationServer(int threads) {
+		workers = Executors.newFixedThreadPool(threads);
+	}
+	
+	/**
+	 * Lets scenarios write their motions with traj=<name>, always to a file in this directory
+	 * @param trajectoryDirectory	null to not allow traj=
+	 */
+	public void setTrajectoryDirectory(File trajectoryDirectory) {
+		this.trajectoryDirectory = trajectoryDirectory;
+		if (trajectoryDirectory != null) {
+			trajectoryDirectory.mkdirs();
+		}
+	}
+	
+	/**
+	 * Accepts connections on the port of the local machine forever, serving each on its own thread
+	 * @param port	port to listen on
+	 */
+	public void listen(int port) throws IOException {
+		try (ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+			System.out.println("Listening on port " + serverSocket.getLocalPort());
+			while (true) {
+				Socket socket = serverSocket.accept();
+				Thread connection = new Thread(() -> {
+					try (Socket s = socket) {
+						serve(s.getInputStream(), s.getOutputStream());
+					}
+					catch(IOException ex) {
+						System.out.println("Error serving connection");
+					}
+				});
+				connection.start();
+			}
+		}
+	}
+	
+	/**
+	 * Reads scenarios until the end of the input, handing each to the workers, and returns once every result has been written
+	 * @param in	one scenario per line
+	 * @param out	one result per line, in the order they finish
+	 */
+	public void serve(InputStream in, OutputStream out) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+		PrintWriter writer = new PrintWriter(out, false);
+		synchronized (writer) {
+			writer.println("# id " + header());
+			writer.flush();
+		}
+		
+		List<Future<?>> jobs = new ArrayList<Future<?>>();
+		long lineNumber = 0;
+		String line;
+		while ((line = reader.readLine()) != null) {
+			lineNumber++;
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			String spec = line;
+			String defaultId = String.valueOf(lineNumber);
+			jobs.add(workers.submit(() -> {
+				String result;
+				try {
+					result = runSpec(spec, defaultId);
+				}
+				catch(Throwable ex) {
+					// runSpec answers for itself, this is only if even that failed, so the client is never left waiting
+					result = defaultId + " error " + ex;
+				}
+				synchronized (writer) {
+					writer.println(result);
+					writer.flush();
+				}
+			}));
+			
+			// Finished jobs are dropped as we go so a long session doesn't keep them all
+			if (jobs.size() > 1024) {
+				jobs.removeIf(Future::isDone);
+			}
+		}
+		
+		for (Future<?> job : jobs) {
+			try {
+				job.get();
+			}
+			catch(ExecutionException ex) {
+				System.err.println("Error running scenario: " + ex.getCause());
+			}
+			catch(InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+	}
+	
+	public void shutdown() {
+		workers.shutdown();
+	}
+	
+	/**
+	 * Names of the columns of each result line after the id
+	 * The peak jerk reached is peakJerk since ScenarioSummary already has a maxJerk column, the MAX_JERK the run was given
+	 */
+	public static String header() {
+		return ScenarioSummary.header() + " peakJerk amplification";
+	}
+	
+	/**
+	 * Writes a scenario as a line the server reads, the opposite of runSpec()
+	 * @param config	parameters of the run, custom models can't be sent
+	 * @param followers	number of following cars
+	 * @return		the name=value pairs without an id
+	 */
+	public static String spec(ModelConfig config, int followers) {
+		return "model=" + config.getModel() + " case=" + config.getCase() + " lambda=" + config.getLambda()
+				+ " rxn=" + config.getReactionTime() + " accel=" + config.getMaxAccel() + " decel=" + config.getMaxDecel()
+				+ " jerk=" + config.getMaxJerk() + " runTime=" + config.getRunTime() + " followers=" + followers;
+	}
+	
+	/**
+	 * Runs one scenario line, on whichever worker thread calls it
+	 * @param spec	the scenario as name=value pairs separated by spaces
+	 * @param defaultId	id to use if the line doesn't give one
+	 * @return		the result line
+	 */
+	public String runSpec(String spec, String defaultId) {
+		String id = defaultId;
+		try {
+			ModelConfig config = new ModelConfig();
+			int followers = 2; // Same as TrafficModel.run()
+			File trajectoryFile = null;
+			String lead = null;
+			for (String pair : spec.split("\\s+")) {
+				String[] keyValue = pair.split("=", 2);
+				if (keyValue.length != 2) {
+					throw new IllegalArgumentException("Scenarios should look like name=value name=value ... but got " + pair);
+				}
+				String value = keyValue[1];
+				switch (keyValue[0]) {
+				case "id":
+					id = value;
+					break;
+				case "model":
+					config.setModel(TrafficModel.Model.valueOf(value));
+					break;
+				case "case":
+					config.setCase(TrafficModel.Case.valueOf(value));
+					break;
+				case "lambda":
+					config.setLambda(Double.parseDouble(value));
+					break;
+				case "rxn":
+					config.setReactionTime(Long.parseLong(value));
+					break;
+				case "accel":
+					config.setMaxAccel(Double.parseDouble(value));
+					break;
+				case "decel":
+					config.setMaxDecel(Double.parseDouble(value));
+					break;
+				case "jerk":
+					config.setMaxJerk(Double.parseDouble(value));
+					break;
+				case "runTime":
+					config.setRunTime(Long.parseLong(value));
+					break;
+				case "followers":
+					followers = Integer.parseInt(value);
+					break;
+				case "traj":
+					trajectoryFile = trajectoryFile("traj", value);
+					break;
+				case "lead":
+					lead = value;
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown name " + keyValue[0]);
+				}
+			}
+			
+			// Made once the whole line is read as the lead car depends on the case
+			LeadMotionSource leadSource = null;
+			if (lead != null) {
+				if (!lead.equals("closed") && !lead.equals("stepped")) {
+					lead = trajectoryFile("lead", lead).getPath();
+				}
+				leadSource = LeadMotionSource.parse(lead, config);
+			}
+			try {
+				return id + " " + run(config, followers, trajectoryFile, leadSource);
+			} finally {
+				if (leadSource instanceof RecordedLeadMotion) {
+					((RecordedLeadMotion)leadSource).close();
+				}
+			}
+		}
+		catch(RuntimeException ex) {
+			return id + " error " + ex.getMessage();
+		}
+		catch(IOException ex) {
+			// The lead= file couldn't be opened, nothing was run
+			return id + " error " + ex.getMessage();
+		}
+		catch(Throwable ex) {
+			// e.g. OutOfMemoryError, the half run simulation is dropped so the next scenario starts afresh
+			simulations.remove();
+			return id + " error " + ex;
+		}
+	}
+	
+	/**
+	 * Where a scenario's traj= file goes or lead= file is read from, only ever inside the trajectory directory
+	 * so a client can't write or read anywhere else
+	 * @param key	name the file was given with, for the error
+	 * @param name	file name from the scenario
+	 */
+	private File trajectoryFile(String key, String name) {
+		if (trajectoryDirectory == null) {
+			throw new IllegalArgumentException(key + " needs the server to be started with traj=<directory>");
+		}
+		Path directory = trajectoryDirectory.toPath().toAbsolutePath().normalize();
+		Path file = directory.resolve(name).normalize();
+		if (!file.startsWith(directory) || file.equals(directory)) {
+			throw new IllegalArgumentException(key + " should name a file in " + directory + " but got " + name);
+		}
+		return file.toFile();
+	}
+	
+	/**
+	 * Runs one scenario, streaming it through reducers so no motions are kept
+	 * @param config	parameters of the run
+	 * @param followers	number of following cars, spaced as in ParameterSweep
+	 * @return		the result line without the id
+	 */
+	public String run(ModelConfig config, int followers) {
+		return run(config, followers, null);
+	}
+	
+	/**
+	 * Same as run(ModelConfig, int) but also writes the motions of every car to a TrajectoryFile
+	 * @param trajectoryFile	where to write the motions, null to only stream them
+	 */
+	public String run(ModelConfig config, int followers, File trajectoryFile) {
+		return run(config, followers, trajectoryFile, null);
+	}
+	
+	/**
+	 * Same as run(ModelConfig, int, File) but with the lead car made by the given source
+	 * @param leadSource	where the lead car comes from, null to step on the config's Case
+	 */
+	public String run(ModelConfig config, int followers, File trajectoryFile, LeadMotionSource leadSource) {
+		GapReducer gaps = new GapReducer(followers + 1);
+		PeakReducer peaks = new PeakReducer();
+		StringStabilityReducer stability = new StringStabilityReducer(followers + 1);
+		MotionSink sink = new CombinedSink(gaps, peaks, stability);
+		CollectingSink collector = null;
+		if (trajectoryFile != null) {
+			collector = new CollectingSink(config, followers + 1);
+			sink = new CombinedSink(sink, collector);
+		}
+		double[] offsets = Platoon.evenlySpaced(followers, 20.0, 20.0);
+		
+		StreamingSimulation simulation = simulations.get();
+		if (simulation == null) {
+			simulation = new StreamingSimulation(config, offsets, sink, leadSource);
+			simulations.set(simulation);
+		} else {
+			simulation.reset(config, offsets, sink, leadSource);
+		}
+		simulation.run();
+		if (collector != null) {
+			TrajectoryFile.write(trajectoryFile, collector.getCars());
+		}
+		
+		return ScenarioSummary.fromReducers(config, gaps, peaks) + " " + peaks.getMaxJerk() + " " + stability.getMaxAmplification();
+	}
+}
@@ -0,0 +1,25 @@
+/**
+ * The lead car worked out one time step after another from the one before, as in TrafficModel.generateLeadCar()
+ * Used for the Cases with no closed form, and gives exactly the same motion as generateLeadCar() does for every Case
+ * @author Benjamin Chant
+ */
+public class SteppedLeadMotion implements LeadMotionSource {
+	private ModelConfig config;
+	
+	/**
+	 * @param config	parameters of the run, the Case picks the motion
+	 */
+	public SteppedLeadMotion(ModelConfig config) {
+		this.config = config;
+	}
+	
+	@Override
+	public void start(Trajectory leadCar) {
+		TrafficModel.startLeadCar(leadCar);
+	}
+	
+	@Override
+	public void advance(Trajectory leadCar, long untilTime) {
+		TrafficModel.advanceLeadCar(config, leadCar, untilTime);
+	}
+}
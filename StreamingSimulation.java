@@ -0,0 +1,212 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Runs the lead car and a platoon of following cars together one time step at a time,
+ * each car only keeping one reaction time of its own motion in a RingBufferMotion.
+ * Every instance goes straight to a MotionSink, so memory depends on the number of cars and the reaction time
+ * but not on how long the run is
+ * @author Benjamin Chant
+ */
+public class StreamingSimulation {
+	private ModelConfig config;
+	private RingBufferMotion[] cars;
+	private MotionSink sink;
+	private LeadMotionSource leadSource = null; // Null for the config's Case stepped on by TrafficModel
+	private long time = 0; // millis
+	private CheckpointWriter checkpoints = null;
+	private long checkpointInterval = 0; // millis
+	
+	public static void main(String args[]) throws IOException {
+		int followers = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+		ModelConfig config = new ModelConfig();
+		if (args.length > 1) {
+			config.setRunTime(Long.parseLong(args[1]));
+		}
+		
+		// Statistics are always kept as the run goes
+		GapReducer gaps = new GapReducer(followers + 1);
+		PeakReducer peaks = new PeakReducer();
+		StringStabilityReducer stability = new StringStabilityReducer(followers + 1);
+		MotionSink sink = new CombinedSink(gaps, peaks, stability);
+		
+		// Also writes car0.txt (the lead car), car1.txt, ... into the given directory if there is one
+		if (args.length > 2) {
+			File[] files = new File[followers + 1];
+			for (int i = 0; i < files.length; i++) {
+				files[i] = new File(args[2], "car" + i + ".txt");
+			}
+			sink = new CombinedSink(sink, new TextFileSink(files));
+		}
+		
+		// The lead car can be given after the directory as closed, stepped or a recorded file read as the run goes
+		LeadMotionSource leadSource = args.length > 3 ? LeadMotionSource.parse(args[3], config) : null;
+		
+		StreamingSimulation simulation = new StreamingSimulation(config, Platoon.evenlySpaced(followers, 20.0, 20.0), sink, leadSource);
+		simulation.run();
+		if (leadSource instanceof RecordedLeadMotion) {
+			((RecordedLeadMotion)leadSource).close();
+		}
+		System.out.println("Last car finished at position " + simulation.getCar(followers).getPosition(config.getRunTime()));
+		System.out.println("Smallest gap " + gaps.getMinGap() + " m at " + gaps.getMinGapTime() + " ms, " + gaps.getCollisions() + " cars collided");
+		System.out.println("Largest acceleration " + peaks.getMaxAcceleration() + " m/s^2, largest jerk " + peaks.getMaxJerk() + " m/s^3");
+		System.out.println("String stability: largest amplification " + stability.getMaxAmplification()
+				+ ", last car over lead car " + stability.getPlatoonAmplification());
+	}
+	
+	/**
+	 * Sets up every car at time 0
+	 * @param config	parameters of the run
+	 * @param offsets	starting position of each following car, should be meters
+	 * @param sink	where every instance of every car is sent, can be null
+	 */
+	public StreamingSimulation(ModelConfig config, double[] offsets, MotionSink sink) {
+		this(config, offsets, sink, null);
+	}
+	
+	/**
+	 * Sets up every car at time 0 with the lead car coming from somewhere other than the config's Case stepped on
+	 * @param leadSource	where the lead car's motion comes from, null for the config's Case as TrafficModel steps it
+	 */
+	public StreamingSimulation(ModelConfig config, double[] offsets, MotionSink sink, LeadMotionSource leadSource) {
+		cars = new RingBufferMotion[0];
+		reset(config, offsets, sink, leadSource);
+	}
+	
+	/**
+	 * Carries on from cars which have already been run up to the given time, used by Checkpoint to resume a run
+	 * @param cars	every car's recent motion, lead car first
+	 * @param time	time every car has reached, should be in millis
+	 * @param leadSource	where the lead car carries on from, null for the config's Case stepped on by TrafficModel
+	 */
+	StreamingSimulation(ModelConfig config, RingBufferMotion[] cars, long time, MotionSink sink, LeadMotionSource leadSource) {
+		this.config = config;
+		this.cars = cars;
+		this.time = time;
+		this.sink = sink;
+		this.leadSource = leadSource;
+	}
+	
+	/**
+	 * Sets up every car at time 0 again for a new run, reusing the ring buffers of the last run where they are big enough
+	 * so that a long lived process running many small scenarios isn't forever allocating them
+	 * @param config	parameters of the run
+	 * @param offsets	starting position of each following car, should be meters
+	 * @param sink	where every instance of every car is sent, can be null
+	 */
+	public void reset(ModelConfig config, double[] offsets, MotionSink sink) {
+		reset(config, offsets, sink, null);
+	}
+	
+	/**
+	 * Same as reset(ModelConfig, double[], MotionSink) with the lead car coming from the given source
+	 * @param leadSource	where the lead car's motion comes from, null for the config's Case as TrafficModel steps it
+	 */
+	public void reset(ModelConfig config, double[] offsets, MotionSink sink, LeadMotionSource leadSource) {
+		this.config = config;
+		this.sink = sink;
+		this.leadSource = leadSource;
+		time = 0;
+		int capacity = RingBufferMotion.capacityFor(config);
+		if (cars.length != offsets.length + 1) {
+			cars = Arrays.copyOf(cars, offsets.length + 1);
+		}
+		for (int i = 0; i < cars.length; i++) {
+			if (cars[i] == null || cars[i].getCapacity() < capacity) {
+				cars[i] = new RingBufferMotion(config.getTimeStep(), capacity, i, sink);
+			} else {
+				cars[i].reset(config.getTimeStep(), i, sink);
+			}
+		}
+		if (leadSource == null) {
+			TrafficModel.startLeadCar(cars[0]);
+		} else {
+			leadSource.start(cars[0]);
+		}
+		for (int i = 1; i < cars.length; i++) {
+			TrafficModel.startFollowingCar(cars[i], offsets[i - 1]);
+		}
+	}
+	
+	/**
+	 * Takes a Checkpoint every so often as the run goes, which the writer saves on its own thread
+	 * @param writer	where to send the checkpoints, null to stop taking them
+	 * @param interval	time between checkpoints, should be in millis and a multiple of the time step
+	 * @throws IllegalArgumentException	if the interval isn't a positive multiple of the time step, as it would never be reached,
+	 * 			or the lead car comes from a LeadMotionSource that a Checkpoint can't save
+	 */
+	public void setCheckpoints(CheckpointWriter writer, long interval) {
+		if (writer != null) {
+			Checkpoint.describe(leadSource);
+		}
+		if (writer != null && (interval <= 0 || interval % config.getTimeStep() != 0)) {
+			throw new IllegalArgumentException("Checkpoint interval should be a positive multiple of the " + config.getTimeStep()
+					+ " ms time step but got " + interval);
+		}
+		checkpoints = writer;
+		checkpointInterval = interval;
+	}
+	
+	/**
+	 * Runs to the config's run time and then finishes the sink
+	 */
+	public void run() {
+		runUntil(config.getRunTime());
+		if (sink != null) {
+			sink.finish();
+		}
+	}
+	
+	/**
+	 * Moves every car on one time step at a time
+	 * @param untilTime	time every car should reach, should be in millis
+	 */
+	public void runUntil(long untilTime) {
+		long timeStep = config.getTimeStep();
+		Metrics.Phase phase = Metrics.begin("streaming", -1);
+		long fromTime = time;
+		while (time < untilTime) {
+			time += timeStep;
+			
+			// Goes from the back of the platoon to the front, so the car in front has not yet
+			// overwritten the instance from a reaction time ago that the car behind reads
+			for (int i = cars.length - 1; i > 0; i--) {
+				TrafficModel.advanceFollowingCar(config, cars[i - 1], cars[i], time);
+			}
+			if (leadSource == null) {
+				TrafficModel.advanceLeadCar(config, cars[0], time);
+			} else {
+				leadSource.advance(cars[0], time);
+			}
+			
+			if (checkpoints != null && time % checkpointInterval == 0) {
+				checkpoints.submit(this);
+			}
+		}
+		Metrics.end(phase, (time - fromTime) / timeStep * cars.length);
+	}
+	
+	/**
+	 * Getters
+	 */
+	public ModelConfig getConfig() {
+		return config;
+	}
+	
+	public LeadMotionSource getLeadSource() {
+		return leadSource;
+	}
+	
+	public long getTime() {
+		return time;
+	}
+	
+	public int getCarCount() {
+		return cars.length;
+	}
+	
+	public RingBufferMotion getCar(int car) {
+		return cars[car];
+	}
+}
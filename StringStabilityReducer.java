@@ -0,0 +1,66 @@
+/**
+ * Measures whether a change in the lead car's speed grows or dies away down the platoon ("string stability")
+ * Keeps the lowest and highest velocity of each car, the spread between them is how much that car's speed was disturbed.
+ * The amplification of a car is its spread over the spread of the car in front, over 1 meaning the disturbance grew
+ * @author Benjamin Chant
+ */
+public class StringStabilityReducer implements MotionSink {
+	private double[] minVelocities;
+	private double[] maxVelocities;
+	
+	/**
+	 * @param cars	number of cars including the lead car
+	 */
+	public StringStabilityReducer(int cars) {
+		minVelocities = new double[cars];
+		maxVelocities = new double[cars];
+		for (int i = 0; i < cars; i++) {
+			minVelocities[i] = Double.POSITIVE_INFINITY;
+			maxVelocities[i] = Double.NEGATIVE_INFINITY;
+		}
+	}
+	
+	@Override
+	public void accept(int car, long time, double position, double velocity, double acceleration, double jerk) {
+		minVelocities[car] = Math.min(minVelocities[car], velocity);
+		maxVelocities[car] = Math.max(maxVelocities[car], velocity);
+	}
+	
+	/**
+	 * Spread of the car's velocity so far, should be meters/second
+	 */
+	public double getSpread(int car) {
+		return maxVelocities[car] - minVelocities[car];
+	}
+	
+	/**
+	 * @param car	a following car, 1 or more
+	 * @return		spread of the car over the spread of the car in front, NaN if the car in front was never disturbed
+	 */
+	public double getAmplification(int car) {
+		double inFront = getSpread(car - 1);
+		return inFront > 0 ? getSpread(car) / inFront : Double.NaN;
+	}
+	
+	/**
+	 * Largest amplification of any following car, NaN if none can be worked out (e.g. CONSTANT_VELOCITY)
+	 */
+	public double getMaxAmplification() {
+		double max = Double.NaN;
+		for (int car = 1; car < minVelocities.length; car++) {
+			double amplification = getAmplification(car);
+			if (!Double.isNaN(amplification) && (Double.isNaN(max) || amplification > max)) {
+				max = amplification;
+			}
+		}
+		return max;
+	}
+	
+	/**
+	 * Spread of the last car over the spread of the lead car, NaN if the lead car was never disturbed
+	 */
+	public double getPlatoonAmplification() {
+		double lead = getSpread(0);
+		return lead > 0 ? getSpread(minVelocities.length - 1) / lead : Double.NaN;
+	}
+}
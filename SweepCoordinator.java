@@ -0,0 +1,422 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Runs a ParameterSweep across several worker JVMs on the same machine instead of one, each worker being a
+ * SimulationServer reading scenarios on its stdin. Every JVM has its own small heap and garbage collector,
+ * so more scenarios can run at once without long pauses, and nothing is needed apart from java itself.
+ * The grid is cut into one shard per worker, each worker working from the front of its own shard and,
+ * once that is empty, taking scenarios from the back of whichever shard has the most left ("work stealing").
+ * The results are put back into the order of the grid and written as one file.
+ * Every worker is kept going until every result is in, so the scenarios of a worker which dies (or gives no result
+ * for the timeout and is stopped) are run again by another, once more at most before they are counted as failed.
+ * Run with the same grid arguments as ParameterSweep plus workers=N (JVMs), threads=N (per JVM),
+ * heap=<e.g. 256m>, timeout=<seconds, 0 for none>, out=<file> and traj=<directory>, which also writes every
+ * scenario's motions as a TrajectoryFile in that directory with a manifest.txt saying which is which
+ * @author Benjamin Chant
+ */
+public class SweepCoordinator {
+	private static final int MAX_ATTEMPTS = 2; // Times a scenario is sent to a worker before it is counted as failed
+	
+	private List<String> specs = new ArrayList<String>(); // Scenario lines without their id, in grid order
+	private String[] results; // Result line for each scenario without its id, null until it comes back
+	private int[] attempts; // Times each scenario has been sent to a worker
+	private File trajectoryDirectory;
+	private Worker[] workers;
+	private int finished = 0; // Scenarios with a result or counted as failed
+	private int failures = 0;
+	private long timeoutNanos = 0; // Longest a worker may go without giving a result, 0 for no limit
+	
+	public static void main(String args[]) throws IOException {
+		ParameterSweep sweep = new ParameterSweep();
+		int workerCount = Runtime.getRuntime().availableProcessors();
+		int threads = 1;
+		String heap = null;
+		File file = new File("sweep.txt");
+		File trajectoryDirectory = null;
+		long timeout = 600; // seconds
+		
+		for (String arg : args) {
+			String[] keyValue = arg.split("=", 2);
+			if (keyValue.length != 2) {
+				throw new IllegalArgumentException("Arguments should look like name=value1,value2 but got " + arg);
+			}
+			if (sweep.setParameter(keyValue[0], keyValue[1])) {
+				continue;
+			}
+			switch (keyValue[0]) {
+			case "workers":
+				workerCount = Integer.parseInt(keyValue[1]);
+				break;
+			case "threads":
+				threads = Integer.parseInt(keyValue[1]);
+				break;
+			case "heap":
+				heap = keyValue[1];
+				break;
+			case "timeout":
+				timeout = Long.parseLong(keyValue[1]);
+				break;
+			case "out":
+				file = new File(keyValue[1]);
+				break;
+			case "traj":
+				trajectoryDirectory = new File(keyValue[1]);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown argument " + keyValue[0]);
+			}
+		}
+		
+		SweepCoordinator coordinator = new SweepCoordinator(sweep.scenarios(), sweep.getFollowers(), trajectoryDirectory);
+		coordinator.setTimeout(timeout);
+		long start = System.nanoTime();
+		coordinator.run(workerCount, threads, heap);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		
+		coordinator.writeResultsToFile(file);
+		if (trajectoryDirectory != null) {
+			coordinator.writeManifest(new File(trajectoryDirectory, "manifest.txt"));
+		}
+		System.out.println(coordinator.specs.size() + " scenarios on " + workerCount + " workers took " + seconds + " s, "
+				+ coordinator.failures + " failed, written to " + file);
+	}
+	
+	/**
+	 * @param scenarios	config of each scenario, e.g. from ParameterSweep.scenarios()
+	 * @param followers	number of following cars in every scenario
+	 * @param trajectoryDirectory	where each scenario's TrajectoryFile is written, null for just the summaries
+	 */
+	public SweepCoordinator(List<ModelConfig> scenarios, int followers, File trajectoryDirectory) {
+		this.trajectoryDirectory = trajectoryDirectory;
+		if (trajectoryDirectory != null) {
+			trajectoryDirectory.mkdirs();
+		}
+		for (int i = 0; i < scenarios.size(); i++) {
+			String spec = SimulationServer.spec(scenarios.get(i), followers);
+			if (trajectoryDirectory != null) {
+				// The workers are started with the directory, so only the name is sent
+				spec += " traj=" + trajectoryName(i);
+			}
+			specs.add(spec);
+		}
+		results = new String[specs.size()];
+		attempts = new int[specs.size()];
+	}
+	
+	private static String trajectoryName(int scenario) {
+		return "scenario" + scenario + ".traj";
+	}
+	
+	/**
+	 * @param seconds	longest a worker may go without giving back a result before it is stopped, 0 for no limit
+	 */
+	public void setTimeout(long seconds) {
+		timeoutNanos = seconds * 1000000000L;
+	}
+	
+	/**
+	 * Starts the workers, shares the scenarios between them and waits for every result
+	 * @param workerCount	number of JVMs to start
+	 * @param threads	number of scenarios each JVM runs at once
+	 * @param heap	maximum heap of each JVM such as 256m, null for java's default
+	 */
+	public void run(int workerCount, int threads, String heap) throws IOException {
+		workerCount = Math.max(1, Math.min(workerCount, specs.size()));
+		
+		// Each worker starts with an even share of the grid in order
+		workers = new Worker[workerCount];
+		for (int w = 0; w < workerCount; w++) {
+			Deque<Integer> shard = new ArrayDeque<Integer>();
+			for (int i = w * specs.size() / workerCount; i < (w + 1) * specs.size() / workerCount; i++) {
+				shard.addLast(i);
+			}
+			workers[w] = new Worker(w, shard, threads);
+		}
+		
+		for (Worker worker : workers) {
+			worker.start(threads, heap);
+		}
+		try {
+			for (Worker worker : workers) {
+				// Checks every second that the worker is still giving results while waiting for it to finish
+				while (worker.thread.isAlive()) {
+					worker.thread.join(1000L);
+					stopHungWorkers();
+				}
+				worker.process.waitFor();
+			}
+		}
+		catch(InterruptedException ex) {
+			for (Worker worker : workers) {
+				worker.process.destroyForcibly();
+			}
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Stops any worker which has had scenarios for longer than the timeout without giving a result,
+	 * its feeding thread then sees the end of its output and gives the scenarios to the other workers
+	 */
+	private void stopHungWorkers() {
+		if (timeoutNanos <= 0) {
+			return;
+		}
+		long now = System.nanoTime();
+		for (Worker worker : workers) {
+			long busySince = worker.busySince;
+			if (busySince != 0 && now - busySince > timeoutNanos && !worker.stopped) {
+				worker.stopped = true;
+				System.out.println("Worker " + worker.index + " gave no result for " + timeoutNanos / 1000000000L + " s, stopping it");
+				worker.process.destroyForcibly();
+			}
+		}
+	}
+	
+	/**
+	 * Next scenario for a worker, from the front of its own shard or else the back of the biggest other shard
+	 * @return		index of the scenario, or -1 if there are none left
+	 */
+	private synchronized int nextScenario(Worker worker) {
+		Integer scenario = worker.shard.pollFirst();
+		if (scenario == null) {
+			Worker biggest = null;
+			for (Worker other : workers) {
+				if (biggest == null || other.shard.size() > biggest.shard.size()) {
+					biggest = other;
+				}
+			}
+			scenario = biggest.shard.pollLast();
+			if (scenario == null) {
+				return -1;
+			}
+		}
+		attempts[scenario]++;
+		return scenario;
+	}
+	
+	/**
+	 * Waits until there is a scenario in any shard, which may be one given back by a worker which stopped,
+	 * or until every scenario is finished
+	 * @return		false once every scenario is finished
+	 */
+	private synchronized boolean awaitScenario() throws InterruptedException {
+		while (finished < specs.size()) {
+			for (Worker other : workers) {
+				if (!other.shard.isEmpty()) {
+					return true;
+				}
+			}
+			wait();
+		}
+		return false;
+	}
+	
+	/**
+	 * Takes a result line from a worker
+	 * @return		the scenario it was for, or -1 if the line wasn't a result
+	 */
+	private synchronized int accept(String line) {
+		String[] idResult = line.split(" ", 2);
+		int scenario;
+		try {
+			scenario = Integer.parseInt(idResult[0]);
+		}
+		catch(NumberFormatException ex) {
+			// Something else the worker printed, such as an error message
+			System.out.println(line);
+			return -1;
+		}
+		String result = idResult.length > 1 ? idResult[1] : "";
+		if (scenario < 0 || scenario >= results.length) {
+			System.out.println(line);
+			return -1;
+		}
+		if (result.startsWith("error")) {
+			System.out.println("Scenario " + scenario + " (" + specs.get(scenario) + ") failed: " + result);
+			failures++;
+		} else {
+			results[scenario] = result;
+		}
+		finished++;
+		notifyAll();
+		return scenario;
+	}
+	
+	/**
+	 * Gives scenarios a worker started but never finished to the workers still going, or counts them as failed
+	 * if they have already been tried as often as allowed or there are no workers left
+	 */
+	private synchronized void requeue(List<Integer> scenarios) {
+		Worker alive = null;
+		for (Worker other : workers) {
+			if (other.accepting && (alive == null || other.shard.size() < alive.shard.size())) {
+				alive = other;
+			}
+		}
+		for (int scenario : scenarios) {
+			if (alive != null && attempts[scenario] < MAX_ATTEMPTS) {
+				alive.shard.addFirst(scenario);
+			} else {
+				System.out.println("Scenario " + scenario + " (" + specs.get(scenario) + ") failed: "
+						+ (alive == null ? "no workers left to run it" : "its worker stopped " + attempts[scenario] + " times"));
+				failures++;
+				finished++;
+			}
+		}
+		notifyAll();
+	}
+	
+	/**
+	 * Writes the header and then the result of every scenario in the order of the grid, the same columns as SimulationServer
+	 * @param file
+	 */
+	public void writeResultsToFile(File file) {
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+			writer.write(SimulationServer.header());
+			writer.newLine();
+			for (String result : results) {
+				if (result != null) {
+					writer.write(result);
+					writer.newLine();
+				}
+			}
+		}
+		catch(IOException ex) {
+			System.out.println("Error writing to file");
+		}
+	}
+	
+	/**
+	 * Writes which TrajectoryFile belongs to which scenario, one line per scenario: index, file name and the scenario
+	 * @param file
+	 */
+	public void writeManifest(File file) {
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+			writer.write("# scenario file spec");
+			writer.newLine();
+			for (int i = 0; i < results.length; i++) {
+				if (results[i] != null) {
+					String spec = specs.get(i);
+					writer.write(i + " scenario" + i + ".traj " + spec.substring(0, spec.indexOf(" traj=")));
+					writer.newLine();
+				}
+			}
+		}
+		catch(IOException ex) {
+			System.out.println("Error writing to file");
+		}
+	}
+	
+	/**
+	 * Getters
+	 */
+	public String getResult(int scenario) {
+		return results[scenario];
+	}
+	
+	public int getFailures() {
+		return failures;
+	}
+	
+	/**
+	 * One worker JVM and the thread which feeds it scenarios and reads back its results
+	 */
+	private class Worker {
+		private int index;
+		private Deque<Integer> shard; // Guarded by the coordinator
+		private int window; // Most scenarios sent to the JVM and not yet finished, keeps its threads busy without emptying the shards
+		private boolean accepting = true; // False once the JVM has stopped, so it can't be given more
+		private volatile boolean stopped = false; // set once the watchdog has killed it
+		private volatile long busySince = 0; // nanoTime of the last result, or of sending scenarios after having none, 0 while it has none
+		private Process process;
+		private Thread thread;
+		
+		Worker(int index, Deque<Integer> shard, int threads) {
+			this.index = index;
+			this.shard = shard;
+			this.window = 2 * threads;
+		}
+		
+		void start(int threads, String heap) throws IOException {
+			List<String> command = new ArrayList<String>();
+			command.add(new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath());
+			if (heap != null) {
+				command.add("-Xmx" + heap);
+			}
+			command.add("-cp");
+			command.add(System.getProperty("java.class.path"));
+			command.add("SimulationServer");
+			command.add("threads=" + threads);
+			if (trajectoryDirectory != null) {
+				command.add("traj=" + trajectoryDirectory.getAbsolutePath());
+			}
+			process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+			thread = new Thread(this::feed, "worker-" + index);
+			thread.start();
+		}
+		
+		private void feed() {
+			List<Integer> running = new ArrayList<Integer>();
+			try (PrintWriter toWorker = new PrintWriter(process.getOutputStream(), false);
+					BufferedReader fromWorker = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+				// Keeps the worker topped up until every scenario is finished, then leaving the loop closes its input so it exits
+				while (true) {
+					while (running.size() < window) {
+						int scenario = nextScenario(this);
+						if (scenario < 0) {
+							break;
+						}
+						toWorker.println("id=" + scenario + " " + specs.get(scenario));
+						if (running.isEmpty()) {
+							busySince = System.nanoTime();
+						}
+						running.add(scenario);
+					}
+					toWorker.flush();
+					
+					if (running.isEmpty()) {
+						// Stays open in case another worker stops and its scenarios need running again
+						if (!awaitScenario()) {
+							break;
+						}
+						continue;
+					}
+					
+					String line = fromWorker.readLine();
+					if (line == null) {
+						break;
+					}
+					if (!line.startsWith("#")) {
+						running.remove((Integer)accept(line));
+						busySince = running.isEmpty() ? 0 : System.nanoTime();
+					}
+				}
+			}
+			catch(IOException ex) {
+				System.out.println("Error talking to worker " + index);
+			}
+			catch(InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+			busySince = 0;
+			synchronized (SweepCoordinator.this) {
+				accepting = false;
+			}
+			if (!running.isEmpty()) {
+				System.out.println("Worker " + index + " stopped with " + running.size() + " scenarios unfinished");
+				requeue(running);
+			}
+		}
+	}
+}
@@ -0,0 +1,86 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes each car's instances out to its own text file as they arrive, in the same format as CarMotion.writeCarMotionToFile()
+ * Lines are formatted by MotionExporter into a buffer per car, so no Strings are made per instance
+ * @author Benjamin Chant
+ */
+public class TextFileSink implements MotionSink {
+	private static final int BUFFER_BYTES = 1 << 13; // Kept small since there is one per car
+	
+	private FileChannel[] channels;
+	private ByteBuffer[] buffers;
+	private StringBuilder line = new StringBuilder(MotionExporter.MAX_LINE_BYTES);
+	
+	/**
+	 * @param files	file for each car, 0 being the lead car
+	 */
+	public TextFileSink(File[] files) {
+		channels = new FileChannel[files.length];
+		buffers = new ByteBuffer[files.length];
+		try {
+			for (int i = 0; i < files.length; i++) {
+				channels[i] = MotionExporter.open(files[i]);
+				buffers[i] = ByteBuffer.allocate(BUFFER_BYTES);
+			}
+		}
+		catch(IOException ex) {
+			System.out.println("Error writing to file");
+		}
+	}
+	
+	@Override
+	public void accept(int car, long time, double position, double velocity, double acceleration, double jerk) {
+		if (channels[car] == null) {
+			return;
+		}
+		ByteBuffer buffer = buffers[car];
+		if (buffer.remaining() < MotionExporter.MAX_LINE_BYTES && !flush(car)) {
+			return;
+		}
+		MotionExporter.putLine(line, buffer, time, position, velocity, acceleration, jerk);
+	}
+	
+	/**
+	 * Writes out what is in the car's buffer
+	 * @return		false if the file couldn't be written to, after which the car is skipped
+	 */
+	private boolean flush(int car) {
+		ByteBuffer buffer = buffers[car];
+		try {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channels[car].write(buffer);
+			}
+			buffer.clear();
+			return true;
+		}
+		catch(IOException ex) {
+			System.out.println("Error writing to file");
+			close(car);
+			return false;
+		}
+	}
+	
+	private void close(int car) {
+		try {
+			channels[car].close();
+		}
+		catch(IOException ex) {
+			System.out.println("Error writing to file");
+		}
+		channels[car] = null;
+	}
+	
+	@Override
+	public void finish() {
+		for (int car = 0; car < channels.length; car++) {
+			if (channels[car] != null && flush(car)) {
+				close(car);
+			}
+		}
+	}
+}
@@ -5,24 +5,26 @@ import java.io.File;
  * @author Benjamin Chant
  */
 public class TrafficModel {
-	// Global parameters of the model which are all fixed during runtime
+	// Default parameters of the model, a run takes its own copy of them in a ModelConfig so they can be changed per run
 	public static final double VEHICLE_LENGTH = 5.0; // meter
 	public static final long TIME_STEP = 10; // millis // Should probably divide RXN_TIME
 	public static final long RUN_TIME = 100000; // millis // Change this to 0 for no same model with no reaction factor
-	private static final long RXN_TIME = 2000; // millis
-	private static final double MAX_DECEL = -2.0; // meter/(second^2)
-	private static final double MAX_ACCEL = 2.0; // meter/(second^2)
-	private static final double MAX_JERK = 1.0; // meter/(second^3)
-	private static final double LAMBDA = 0.1; // Constant of proportionality used by some models
-	private static final Case CURRENT_CASE = Case.QUICK_ACCELERATION; // Change this for different lead car motions
-	private static enum Case {
+	static final long RXN_TIME = 2000; // millis
+	static final double MAX_DECEL = -2.0; // meter/(second^2)
+	static final double MAX_ACCEL = 2.0; // meter/(second^2)
+	static final double MAX_JERK = 1.0; // meter/(second^3)
+	static final double LAMBDA = 0.1; // Constant of proportionality used by some models
+	static final double LEAD_START_POSITION = 50.0; // meter
+	static final double LEAD_START_VELOCITY = 10.0; // meter/second
+	static final Case CURRENT_CASE = Case.QUICK_ACCELERATION; // Change this for different lead car motions
+	public static enum Case {
 		CONSTANT_VELOCITY,
 		QUICK_ACCELERATION,
 		SMOOTH_ACCELERATION,
 		OSCILLATORY
 	}
-	private static final Model CHOSEN_MODEL = Model.LINEAR_CAR_FOLLOWING; // Change this for different modelling approaches
-	private static enum Model{
+	static final Model CHOSEN_MODEL = Model.LINEAR_CAR_FOLLOWING; // Change this for different modelling approaches
+	public static enum Model{
 		SAFE_DISTANCE,			// Uses parameter MEX_DECEL
 		PROPORTIONAL_ACCELERATION,		// Uses parameter LAMBDA (and MAX_DECEL for safe distance)
 		LINEAR_CAR_FOLLOWING,	// Uses parameter LAMBDA
@@ -36,17 +38,20 @@ public class TrafficModel {
 	 * @return		the array contains the 3 CarMotions after the model has ran
 	 */
 	public static CarMotion[] run() {
-		CarMotion leadCar = generateLeadCar(); // Predetermined motion which doesn't use the model
-		CarMotion firstCar = generateFollowingCar(leadCar, 20.0); // First use of the model to create another car's motion, dependent on "leadCar"
-		CarMotion secondCar = generateFollowingCar(firstCar, 0.0); // Then uses the first generated car's motion to create a second car motion
+		ModelConfig config = new ModelConfig(); // Uses the default parameters above
+		CarMotion leadCar = generateLeadCar(config); // Predetermined motion which doesn't use the model
+		// Uses the model to create the first car's motion from "leadCar", then the second car's motion from the first
+		// (through Platoon on one thread, which does the same as generateFollowingCar down the chain but times each car)
+		CarMotion[] followers = Platoon.generate(config, leadCar, new double[] {20.0, 0.0}, 1);
+		CarMotion firstCar = followers[1];
+		CarMotion secondCar = followers[2];
 
-		// Each car's motion is saved out to separate plain text files
+		// Each car's motion is saved out to separate plain text files, all three written at once
 		File leadCarFile = new File("lead.txt");
 		File firstCarFile = new File("first.txt");
 		File secondCarFile = new File("second.txt");
-		leadCar.writeCarMotionToFile(leadCarFile);
-		firstCar.writeCarMotionToFile(firstCarFile);
-		secondCar.writeCarMotionToFile(secondCarFile);
+		MotionExporter.write(new CarMotion[] {leadCar, firstCar, secondCar}, new File[] {leadCarFile, firstCarFile, secondCarFile}, 3, false);
+		TrajectoryFile.write(new File("run.traj"), new CarMotion[] {leadCar, firstCar, secondCar}); // Same again in one binary file which is much quicker to load
 		
 		// Easier to return the CarMotion objects than to read out from text file when making the animation
 		return new CarMotion[] {leadCar, firstCar, secondCar};
@@ -57,23 +62,47 @@ public class TrafficModel {
 	 * Motion of the returned "vehicle" is not dependent on any others
 	 * i.e. this car just does it's own path
 	 * Will contain different cases of interest in order to test the model under in different scenarios
-	 * @return		the motion of the lead vehicle, dependant on CURRENT_CASE
+	 * @param	config	parameters of the run
+	 * @return		the motion of the lead vehicle, dependant on the config's Case
 	 */
-	private static CarMotion generateLeadCar() {
-		// Generates initial conditions
-		CarMotion leadCar = new CarMotion();
-		long time = 0;
-		double position = 50.0;
-		double velocity = 10.0;
-		double acceleration = 0.0;
-		double jerk = 0.0;
-		leadCar.appendInstance(new CarInstance(position, velocity, acceleration, jerk), time);
+	static CarMotion generateLeadCar(ModelConfig config) {
+		Metrics.Phase phase = Metrics.begin("lead", 0);
+		CarMotion leadCar = new CarMotion(config.getTimeStep(), config.getSampleCount());
+		startLeadCar(leadCar);
+		advanceLeadCar(config, leadCar, config.getRunTime());
+		Metrics.end(phase, leadCar.size() - 1);
+		return leadCar;
+	}
+	
+	/**
+	 * Generates the initial conditions of the lead car
+	 * @param leadCar	empty motion which the instance at time 0 is appended to
+	 */
+	static void startLeadCar(Trajectory leadCar) {
+		leadCar.appendInstance(LEAD_START_POSITION, LEAD_START_VELOCITY, 0.0, 0.0, 0);
+	}
+	
+	/**
+	 * Carries on the motion of the lead car from its last instance up to the given time
+	 * @param config	parameters of the run
+	 * @param leadCar	motion of the lead car which is appended to
+	 * @param untilTime	time the lead car should reach, should be in millis
+	 */
+	static void advanceLeadCar(ModelConfig config, Trajectory leadCar, long untilTime) {
+		long timeStepMillis = config.getTimeStep();
 		
-		double timeStep = (double)TIME_STEP / 1000.0; // Convert to seconds for ease
-		while (time < RUN_TIME) {
+		// Picks up from wherever the car was left
+		long time = leadCar.getLastTime();
+		double position = leadCar.getPosition(time);
+		double velocity = leadCar.getVelocity(time);
+		double acceleration = leadCar.getAcceleration(time);
+		double jerk = leadCar.getJerk(time);
+		
+		double timeStep = (double)timeStepMillis / 1000.0; // Convert to seconds for ease
+		while (time < untilTime) {
 
-			// Use the CURRENT_CASE to change which motion is used for the lead vehicle
-			switch (CURRENT_CASE) {
+			// Use the config's Case to change which motion is used for the lead vehicle
+			switch (config.getCase()) {
 			case CONSTANT_VELOCITY:
 				acceleration = 0.0;
 				jerk = 0.0;
@@ -112,223 +141,83 @@ public class TrafficModel {
 			// Update variables according to new acceleration and save. nb. order matters
 			velocity += acceleration * timeStep;
 			position += velocity * timeStep;
-			time += TIME_STEP;
-			leadCar.appendInstance(new CarInstance(position, velocity, acceleration, jerk), time);
+			time += timeStepMillis;
+			leadCar.appendInstance(position, velocity, acceleration, jerk, time);
 		}
-
-		return leadCar;
 	}
 	
 	/*
 	 * This is the method containing the traffic model that we are interested in
 	 */
-	private static CarMotion generateFollowingCar(CarMotion leadCar, double offset) {
-		// Generates initial conditions
-		CarMotion followingCar = new CarMotion();	
-		long time = 0;
-		double position = offset;
-		double velocity = 10.0;
-		double acceleration = 0.0;
-		double jerk = 0.0;
-		followingCar.appendInstance(new CarInstance(position, velocity, acceleration, jerk), time);
-		
-		double timeStep = (double)TIME_STEP / 1000.0; // Convert to seconds for ease
-		while (time < RUN_TIME) {
-			// For positive reaction times cannot say anything about that first time interval so have everything remain the same
-			if (time < RXN_TIME) {
-				acceleration += jerk * timeStep;
-				velocity += acceleration * timeStep;
-				position += velocity * timeStep;
-				time += TIME_STEP;
-				followingCar.appendInstance(new CarInstance(position, velocity, acceleration, jerk), time);
-				continue;
-			}
-			
-			// All variables describing the lead car (RXN_TIME) ago
-			CarInstance oldLeadCarInstance = leadCar.getInstance(time - RXN_TIME);
-			double oldLeadPosition = oldLeadCarInstance.getPosition();
-			double oldLeadVelocity = oldLeadCarInstance.getVelocity();
-			double oldLeadAcceleration = oldLeadCarInstance.getAcceleration();
-			double oldLeadJerk = oldLeadCarInstance.getJerk();
-			
-			// All variables describing the following car (RXN_TIME) ago
-			CarInstance oldFollowingCarInstance = followingCar.getInstance(time - RXN_TIME);
-			double oldPosition = oldFollowingCarInstance.getPosition();
-			double oldVelocity = oldFollowingCarInstance.getVelocity();
-			double oldAcceleration = oldFollowingCarInstance.getAcceleration();
-			// No old jerk needed :)
-			
-			// Most models use the safe distance variable so it's extracted out here
-			double safeDistance = safeDistance(oldLeadVelocity);
-			double safePosition = oldLeadPosition - safeDistance;
-			
-			// Use the CHOSEN_MODEL to change which model is being used for the run
-			switch (CHOSEN_MODEL) {
-			/*
-			 * Safe Distance model fixes the position and speed of each following vehicle according to the speed of the lead
-			 * such that in theory there would be time to break to a stop if the lead vehicle immediately came to rest
-			 */
-			case SAFE_DISTANCE:
-				// No acceleration or jerk terms as they are not relavent to discussion yet
-				double currentLeadPosition = leadCar.getInstance(time).getPosition();
-				double currentLeadVelocity = leadCar.getInstance(time).getVelocity();
-				velocity = currentLeadVelocity;
-				position = currentLeadPosition - safeDistance(velocity) - velocity * timeStep; // Position later updated
-				break;
-			
-			/*
-			 * Uses the proportionality constant to describe the acceleration of the
-			 * following vehicle as proportional to the safe distance behind the lead vehicle
-			 */
-			case PROPORTIONAL_ACCELERATION:
-				// Not going to bother defining jerk as it's not involved yet
-				acceleration = LAMBDA * (safePosition - oldPosition);
-				if (acceleration > MAX_ACCEL) {
-					acceleration = MAX_ACCEL;
-				} else if (acceleration < MAX_DECEL) {
-					acceleration = MAX_DECEL;
-				}
-				
-				break;
-			
-			/*
-			 * Uses the proportionality constant to describe the acceleration of the
-			 * following vehicle as proportional to the relative velocity to the lead vehicle
-			 */
-			case LINEAR_CAR_FOLLOWING:
-				// Not going to bother defining jerk as it's not involved yet
-				acceleration = LAMBDA * (oldLeadVelocity - oldVelocity);
-				break;
-				
-			/*
-			 * Decides which side of the safe distance measurement the vehicle is on and
-			 * accelerates in the appropriate direction immeadiately
-			 */
-			case KEEPING_UP:
-				// Not going to bother defining jerk as it would be poorly defined
-				if (safePosition > oldPosition) {
-					acceleration = MAX_ACCEL;
-				} else if (safePosition < oldPosition) {
-					acceleration = MAX_DECEL;
-				} else {
-					acceleration = 0;
-				}
-				
-				break;
-			
-			/*
-			 * Similar to KEEPING_UP but uses a prediction for the distance required to match speed
-			 * in the aim of not overshooting
-			 */
-			case LINEAR_PREDICION:
-				// Not going to bother defining jerk as it would be poorly defined
-				if (oldVelocity > oldLeadVelocity) {
-					// Require that following vehicle is going faster so that inputting the acceleration as MAX_DECEL makes sense
-					double brakingDist = linearAccelerationDist(oldVelocity, oldLeadVelocity, MAX_DECEL);
-					if (oldPosition >= safePosition - brakingDist) {
-						acceleration = MAX_DECEL;
-					}
-				} else if (oldVelocity < oldLeadVelocity) {
-					if (oldPosition < safePosition) {
-						acceleration = MAX_ACCEL;
-					}
-				} else {
-					acceleration = 0;
-				}
-				
-				break;
-			
-			/**
-			 * Similar to LINEAR_PREDICTION but uses a constant jerk equation for the predictions
-			 */
-			case FIRST_ORDER:
-				// Assume constant jerk in lead vehicle from time (RXN_TIME) ago,
-				// then what velocity will they have at current time?
-				double rxnTime = (double)RXN_TIME / 1000.0; // Convert to seconds for ease
-				double predictedLeadVelocity = oldLeadJerk * rxnTime*rxnTime / 2.0 + oldLeadAcceleration * rxnTime + oldLeadVelocity;
-				double expectedSafeDist = safeDistance(predictedLeadVelocity);
-				
-				if (expectedSafeDist >= oldLeadPosition - oldPosition){
-					if (acceleration == MAX_DECEL) {
-						jerk = 0;
-					} else if (acceleration + jerk * timeStep < MAX_DECEL){
-						jerk = (MAX_DECEL - acceleration) / timeStep;
-						acceleration = MAX_DECEL;
-					} else {
-						jerk = - MAX_JERK;
-						acceleration += jerk * timeStep;
-					}
-				} else if (oldLeadVelocity < oldVelocity) {
-					double expectedBrakingDist = firstOrderDist(oldVelocity, oldLeadVelocity, oldAcceleration, -MAX_JERK);
-					if (expectedSafeDist + expectedBrakingDist >= oldLeadPosition - oldPosition) {
-						if (acceleration == MAX_DECEL) {
-							jerk = 0;
-						} else if (acceleration + jerk * timeStep < MAX_DECEL){
-							jerk = (MAX_DECEL - acceleration) / timeStep;
-							acceleration = MAX_DECEL;
-						} else {
-							jerk = - MAX_JERK;
-							acceleration += jerk * timeStep;
-						} 
-					} 
-				} else {
-					if (acceleration == MAX_ACCEL) {
-						jerk = 0;
-					} else if (acceleration + jerk * timeStep > MAX_ACCEL){
-						jerk = (MAX_ACCEL - acceleration) / timeStep;
-						acceleration = MAX_ACCEL; 
-					} else {
-						jerk = MAX_JERK;
-						acceleration += jerk * timeStep;
-					}
-				}
-				break;
-				
-			default:
-				break;
-			}
-
-			velocity += acceleration * timeStep;
-			position += velocity * timeStep;
-			time += TIME_STEP;
-			followingCar.appendInstance(new CarInstance(position, velocity, acceleration, jerk), time);
-		}
-
+	static CarMotion generateFollowingCar(ModelConfig config, CarMotion leadCar, double offset) {
+		CarMotion followingCar = startFollowingCar(config, offset, leadCar.size());
+		advanceFollowingCar(config, leadCar, followingCar, config.getRunTime());
 		return followingCar;
 	}
 	
 	/**
-	 * Works out the safe distance to follow behind another vehicle
-	 * Assumes both vehicles will be travelling at the same velocity
-	 * @param	v	the assumed equalibrium velocity of both vehicles, should be meters/second
-	 * @return		safe distance for the second vehicle to follow at, given in meters
+	 * Generates the initial conditions of a following car
+	 * @param config	parameters of the run
+	 * @param offset	starting position of the car, should be meters
+	 * @param capacity	number of instances the motion should have room for without growing
+	 * @return		a motion containing just the instance at time 0
+	 */
+	static CarMotion startFollowingCar(ModelConfig config, double offset, int capacity) {
+		CarMotion followingCar = new CarMotion(config.getTimeStep(), capacity);
+		startFollowingCar(followingCar, offset);
+		return followingCar;
+	}
+	
+	/**
+	 * Generates the initial conditions of a following car
+	 * @param followingCar	empty motion which the instance at time 0 is appended to
+	 * @param offset	starting position of the car, should be meters
+	 */
+	static void startFollowingCar(Trajectory followingCar, double offset) {
+		followingCar.appendInstance(offset, 10.0, 0.0, 0.0, 0);
+	}
+	
+	/**
+	 * Carries on the motion of a following car from its last instance up to the given time
+	 * Everything the model needs is read back out of the two motions so the car can be advanced in pieces,
+	 * a car advanced in several calls ends up exactly the same as one advanced in a single call
+	 * @param config	parameters of the run, the same ones must be used for every call on the same car
+	 * @param leadCar	motion of the car in front, must already reach at least (untilTime - time step)
+	 * 					and still hold the instances from a reaction time before that
+	 * @param followingCar	motion of this car which is appended to
+	 * @param untilTime	time the following car should reach, should be in millis
 	 */
-	private static double safeDistance(double v) {
-		return (double)VEHICLE_LENGTH + v * (double)RXN_TIME / 1000.0 - v*v /(2.0 * MAX_DECEL);
+	static void advanceFollowingCar(ModelConfig config, Trajectory leadCar, Trajectory followingCar, long untilTime) {
+		FollowingModel model = FollowingModels.create(config); // Picked once for the whole call rather than every step
+		
+		// Picks up from wherever the car was left
+		long time = followingCar.getLastTime();
+		CarInstance car = new CarInstance(followingCar.getPosition(time), followingCar.getVelocity(time),
+				followingCar.getAcceleration(time), followingCar.getJerk(time));
+		
+		// Each model runs its own loop so its step is the only one that loop calls
+		model.advance(new LookBack(config), leadCar, followingCar, car, untilTime);
 	}
 	
 	/**
-	 * Works out distance reqiured to change speed assuming a constant acceleration or linear change in velocity
-	 * uses the SUVAT/Kinematic equation V^2 - U^2 = 2 * A * S
-	 * with V-endSpeed, U-startSpeed, A-acceleration, S-distance
-	 * @param	startSpeed	initial velocity of the vehicle, should be meters/second
-	 * @param	endSpeed	final, target velocity of the vehicle, should be meters/second
-	 * @param	acceleration	the constant acceleration, should be meters/(second^2)
-	 * @return		distance covered when using a constant acceleration to change speed, given in meters
+	 * Moves a car on one time step with the acceleration it has
+	 * @param car	the car, its velocity and position are changed
+	 * @param timeStep	should be in seconds
 	 */
-	private static double linearAccelerationDist(double startSpeed, double endSpeed, double acceleration) {
-		return (endSpeed*endSpeed - startSpeed*startSpeed) / ((double)2 *acceleration);
+	static void moveCar(CarInstance car, double timeStep) {
+		// Update variables according to new acceleration. nb. order matters
+		car.setVelocity(car.getVelocity() + car.getAcceleration() * timeStep);
+		car.setPosition(car.getPosition() + car.getVelocity() * timeStep);
 	}
 	
 	/**
-	 * Works out distance required to change speed assuming constant jerk
-	 * @param	u	start speed, should be meters/second
-	 * @param	v	end speed, should be meters/second
-	 * @param	a	start acceleration, should be meters/(second^2)
-	 * @return		distance covered when using constant jerk to change speed to desired speed, given in meters
+	 * Works out the safe distance to follow behind another vehicle
+	 * Assumes both vehicles will be travelling at the same velocity
+	 * @param	config	parameters of the run, uses the reaction time and maximum deceleration
+	 * @param	v	the assumed equalibrium velocity of both vehicles, should be meters/second
+	 * @return		safe distance for the second vehicle to follow at, given in meters
 	 */
-	private static double firstOrderDist(double u, double v, double a, double jerk) {
-		double t = (-a - Math.sqrt(a*a - (double)2 * jerk * (u - v)) ) / jerk;
-		return jerk * Math.pow(t, 3) / (double)6 + a * t*t / (double)2 + u * t;
+	static double safeDistance(ModelConfig config, double v) {
+		return (double)VEHICLE_LENGTH + v * (double)config.getReactionTime() / 1000.0 - v*v /(2.0 * config.getMaxDecel());
 	}
 }
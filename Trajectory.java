@@ -0,0 +1,26 @@
+/**
+ * Anything the model can read a car's past motion out of and append its new motion onto
+ * CarMotion keeps the whole run, RingBufferMotion only keeps as much as the model looks back at
+ * @author Benjamin Chant
+ */
+public interface Trajectory {
+	/**
+	 * Getters for each variable at a time which has already been appended
+	 * @param time	should be in millis
+	 */
+	double getPosition(long time);
+	double getVelocity(long time);
+	double getAcceleration(long time);
+	double getJerk(long time);
+	
+	/**
+	 * @return		time of the most recently appended instance, should be in millis
+	 */
+	long getLastTime();
+	
+	/**
+	 * Adds the instance for the next time
+	 * @param time	should be in millis
+	 */
+	void appendInstance(double position, double velocity, double acceleration, double jerk, long time);
+}
@@ -0,0 +1,373 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Remembers motions which have already been worked out so other runs can use them again
+ * The lead car only depends on the case and the time step, and a following car only on the car in front,
+ * its own parameters and its starting position, so that is all a motion is looked up by. The run time is
+ * left out: a longer motion is cut down to the time asked for, and a shorter one is carried on from its last instance
+ * (which gives exactly the same motion as running it that long in the first place).
+ * Motions in memory are limited to a number of bytes, the least recently used being dropped first,
+ * and can be saved in a TrajectoryFile in a spill directory when dropped to be read back when needed again.
+ * What is remembered about a dropped motion goes as well once no other motion is carried on from it, so a long
+ * sweep doesn't fill up the memory with keys either
+ * Spilled motions only last as long as the cache: each cache spills into a new directory of its own inside the
+ * one it is given, deleted on exit. Files left over from another run may have come from older models, and
+ * nothing in the key would tell them apart
+ * @author Benjamin Chant
+ */
+public class TrajectoryCache {
+	private static final int BYTES_PER_INSTANCE = 4 * Double.BYTES;
+	
+	private final long maxBytes;
+	private final File spillDirectory;
+	private final Map<String, Entry> entries = new HashMap<String, Entry>(); // Every motion in memory, spilled, being worked on or being carried on from
+	private final LinkedHashMap<String, Entry> resident = new LinkedHashMap<String, Entry>(16, 0.75f, true); // Those in memory, oldest use first
+	private long bytes = 0;
+	private long hits = 0;
+	private long misses = 0;
+	private long extensions = 0;
+	private long loads = 0;
+	private long spills = 0;
+	private long evictions = 0;
+	
+	/**
+	 * One cached motion, the locks are always taken from a following car towards the lead car, never the other way
+	 */
+	private static class Entry {
+		private final String key;
+		private final Entry leader; // null for the lead car
+		private final ModelConfig config;
+		private final double offset; // meters
+		private final ReentrantLock lock = new ReentrantLock();
+		private CarMotion motion; // null while not in memory
+		private long bytes = 0; // As counted in the cache's total
+		private int followers = 0; // Entries whose leader this is, guarded by the cache's lock
+		private int users = 0; // Calls working with it at the moment, guarded by the cache's lock
+		
+		private Entry(String key, Entry leader, ModelConfig config, double offset) {
+			this.key = key;
+			this.leader = leader;
+			this.config = config;
+			this.offset = offset;
+		}
+	}
+	
+	/**
+	 * @param maxBytes	most bytes of motions to keep in memory
+	 * @param spillDirectory	where to make the directory dropped motions are saved in, null to just drop them
+	 */
+	public TrajectoryCache(long maxBytes, File spillDirectory) {
+		this.maxBytes = maxBytes;
+		this.spillDirectory = spillDirectory != null ? newSpillDirectory(spillDirectory) : null;
+	}
+	
+	private static File newSpillDirectory(File parent) {
+		try {
+			parent.mkdirs();
+			File directory = Files.createTempDirectory(parent.toPath(), "cache").toFile();
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> deleteSpillDirectory(directory)));
+			return directory;
+		}
+		catch(IOException ex) {
+			throw new UncheckedIOException("Couldn't make a spill directory in " + parent, ex);
+		}
+	}
+	
+	private static void deleteSpillDirectory(File directory) {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+	
+	/**
+	 * Key of the lead car's motion, only the case and time step change it
+	 */
+	public static String leadKey(ModelConfig config) {
+		return "lead " + config.getCase() + " " + config.getTimeStep();
+	}
+	
+	/**
+	 * Key of a following car's motion, made from the car in front's key so the whole chain up to the lead car is part of it
+	 */
+	public static String followerKey(String leaderKey, ModelConfig config, double offset) {
+		String model = config.getCustomModel() != null ? config.getCustomModel() : config.getModel().name();
+		return leaderKey + " > " + model + " " + config.getTimeStep() + " " + config.getReactionTime() + " " + config.getMaxDecel()
+				+ " " + config.getMaxAccel() + " " + config.getMaxJerk() + " " + config.getLambda() + " " + offset;
+	}
+	
+	/**
+	 * Same as TrafficModel.generateLeadCar(config)
+	 * @return		a copy the caller is free to change
+	 */
+	public CarMotion getLeadCar(ModelConfig config) {
+		Entry lead = entry(leadKey(config), null, config, 0.0);
+		try {
+			return copy(lead, config.getRunTime());
+		} finally {
+			release(lead);
+		}
+	}
+	
+	/**
+	 * Same as Platoon.generate(config, TrafficModel.generateLeadCar(config), offsets, 1)
+	 * @return		copies the caller is free to change, lead car first
+	 */
+	public CarMotion[] getPlatoon(ModelConfig config, double[] offsets) {
+		ModelConfig[] followerConfigs = new ModelConfig[offsets.length];
+		for (int i = 0; i < offsets.length; i++) {
+			followerConfigs[i] = config;
+		}
+		return getPlatoon(config, followerConfigs, offsets);
+	}
+	
+	/**
+	 * Platoon where each following car can have its own parameters, so changing one car only reruns the cars behind it
+	 * @param leadConfig	parameters of the lead car, its run time is how long every car is run for
+	 * @param followerConfigs	parameters of each following car, first following car first
+	 * @param offsets	starting position of each following car, should be meters
+	 * @return		copies the caller is free to change, lead car first
+	 */
+	public CarMotion[] getPlatoon(ModelConfig leadConfig, ModelConfig[] followerConfigs, double[] offsets) {
+		long untilTime = leadConfig.getRunTime();
+		Entry[] chain = new Entry[offsets.length + 1];
+		try {
+			chain[0] = entry(leadKey(leadConfig), null, leadConfig, 0.0);
+			for (int i = 1; i < chain.length; i++) {
+				ModelConfig config = followerConfigs[i - 1];
+				chain[i] = entry(followerKey(chain[i - 1].key, config, offsets[i - 1]), chain[i - 1], config, offsets[i - 1]);
+			}
+			
+			CarMotion[] cars = new CarMotion[chain.length];
+			for (int i = 0; i < chain.length; i++) {
+				cars[i] = copy(chain[i], untilTime);
+			}
+			return cars;
+		} finally {
+			for (Entry entry : chain) {
+				if (entry != null) {
+					release(entry);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Finds or makes the entry for a key, marked as being used until release() is called
+	 */
+	private synchronized Entry entry(String key, Entry leader, ModelConfig config, double offset) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			entry = new Entry(key, leader, new ModelConfig(config), offset);
+			entries.put(key, entry);
+			if (leader != null) {
+				leader.followers++;
+			}
+		}
+		entry.users++;
+		return entry;
+	}
+	
+	private synchronized void release(Entry entry) {
+		entry.users--;
+		forget(entry);
+	}
+	
+	/**
+	 * Stops remembering an entry which isn't in memory, being used or carried on from, and then its leader the same way
+	 * A spilled motion is found again by its key so it doesn't need the entry.
+	 * Must be called holding the cache's lock
+	 */
+	private void forget(Entry entry) {
+		while (entry != null && entry.motion == null && entry.users == 0 && entry.followers == 0) {
+			entries.remove(entry.key);
+			entry = entry.leader;
+			if (entry != null) {
+				entry.followers--;
+			}
+		}
+	}
+	
+	/**
+	 * Makes sure the entry's motion reaches the time and copies it up to there
+	 * Times between two TIME_STEPs are rounded up to the next one, the same as the motion would end on without the cache
+	 */
+	private CarMotion copy(Entry entry, long untilTime) {
+		long timeStep = entry.config.getTimeStep();
+		long lastTime = (untilTime + timeStep - 1) / timeStep * timeStep;
+		entry.lock.lock();
+		try {
+			ensure(entry, lastTime);
+			return entry.motion.copyUntil(lastTime);
+		} finally {
+			entry.lock.unlock();
+		}
+	}
+	
+	/**
+	 * Loads, works out or carries on the entry's motion until it reaches the time
+	 * Must be called holding the entry's lock
+	 */
+	private void ensure(Entry entry, long untilTime) {
+		boolean loaded = false;
+		if (entry.motion == null) {
+			entry.motion = load(entry);
+			loaded = entry.motion != null;
+		}
+		
+		if (entry.motion != null && entry.motion.getLastTime() >= untilTime) {
+			synchronized (this) {
+				hits++;
+			}
+		} else if (entry.leader == null) {
+			if (entry.motion == null) {
+				entry.motion = new CarMotion(entry.config.getTimeStep(), (int)(untilTime / entry.config.getTimeStep()) + 1);
+				TrafficModel.startLeadCar(entry.motion);
+				count(false);
+			} else {
+				count(true);
+			}
+			TrafficModel.advanceLeadCar(entry.config, entry.motion, untilTime);
+		} else {
+			// The car in front stays locked while this car reads it
+			entry.leader.lock.lock();
+			try {
+				ensure(entry.leader, untilTime);
+				if (entry.motion == null) {
+					entry.motion = TrafficModel.startFollowingCar(entry.config, entry.offset, (int)(untilTime / entry.config.getTimeStep()) + 1);
+					count(false);
+				} else {
+					count(true);
+				}
+				TrafficModel.advanceFollowingCar(entry.config, entry.leader.motion, entry.motion, untilTime);
+			} finally {
+				entry.leader.lock.unlock();
+			}
+		}
+		
+		synchronized (this) {
+			if (loaded) {
+				loads++;
+			}
+			long size = (long)entry.motion.size() * BYTES_PER_INSTANCE;
+			bytes += size - entry.bytes;
+			entry.bytes = size;
+			resident.put(entry.key, entry);
+			evict();
+		}
+	}
+	
+	private synchronized void count(boolean extended) {
+		if (extended) {
+			extensions++;
+		} else {
+			misses++;
+		}
+	}
+	
+	/**
+	 * Drops the least recently used motions until under the limit, skipping any being worked on at the moment
+	 * Must be called holding the cache's lock, only ever tries the entries' locks so can't wait on another thread
+	 */
+	private void evict() {
+		Iterator<Entry> iterator = resident.values().iterator();
+		while (bytes > maxBytes && iterator.hasNext()) {
+			Entry entry = iterator.next();
+			if (entry.lock.isHeldByCurrentThread() || !entry.lock.tryLock()) {
+				continue;
+			}
+			try {
+				spill(entry);
+				entry.motion = null;
+				bytes -= entry.bytes;
+				entry.bytes = 0;
+				evictions++;
+				iterator.remove();
+				forget(entry);
+			} finally {
+				entry.lock.unlock();
+			}
+		}
+	}
+	
+	private void spill(Entry entry) {
+		if (spillDirectory == null) {
+			return;
+		}
+		TrajectoryFile.write(spillFile(entry), new CarMotion[] {entry.motion});
+		spills++;
+	}
+	
+	private CarMotion load(Entry entry) {
+		if (spillDirectory == null) {
+			return null;
+		}
+		File file = spillFile(entry);
+		if (!file.exists()) {
+			return null;
+		}
+		try {
+			return TrajectoryFile.open(file).copyCar(0);
+		}
+		catch(IOException ex) {
+			System.out.println("Error reading from file");
+			return null;
+		}
+	}
+	
+	/**
+	 * Keys can be long, so files are named after a hash of the key
+	 */
+	private File spillFile(Entry entry) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(entry.key.getBytes(StandardCharsets.UTF_8));
+			StringBuilder name = new StringBuilder();
+			for (int i = 0; i < 16; i++) {
+				name.append(String.format("%02x", hash[i]));
+			}
+			return new File(spillDirectory, name + ".traj");
+		}
+		catch(NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+	
+	/**
+	 * Getters
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+	
+	public synchronized long getHits() {
+		return hits;
+	}
+	
+	public synchronized long getMisses() {
+		return misses;
+	}
+	
+	public synchronized long getExtensions() {
+		return extensions;
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return "hits " + hits + ", misses " + misses + ", extended " + extensions + ", evicted " + evictions
+				+ ", spilled " + spills + ", loaded " + loads + ", " + bytes + " bytes in memory";
+	}
+}
@@ -0,0 +1,284 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary alternative to the text files written by CarMotion.writeCarMotionToFile(), much quicker to write and to load again
+ * The file is a header followed by each car's variables as columns of little-endian doubles
+ * 	magic version startTime timeStep sampleCount carCount
+ * 	car0 positions, car0 velocities, car0 accelerations, car0 jerks
+ * 	car1 positions, ...
+ * Reading maps the file into memory so values are read straight out of it without being parsed or copied
+ * @author Benjamin Chant
+ */
+public class TrajectoryFile {
+	private static final int MAGIC = 0x4A415254; // "TRAJ" when read as little-endian bytes
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 32;
+	
+	private long startTime; // millis
+	private long timeStep; // millis
+	private int sampleCount;
+	private DoubleBuffer[] positions;
+	private DoubleBuffer[] velocities;
+	private DoubleBuffer[] accelerations;
+	private DoubleBuffer[] jerks;
+	
+	/**
+	 * Converts text files written by writeCarMotionToFile() into a single binary file
+	 * e.g. java TrajectoryFile run.traj lead.txt first.txt second.txt
+	 */
+	public static void main(String args[]) throws IOException {
+		CarMotion[] cars = new CarMotion[args.length - 1];
+		for (int i = 1; i < args.length; i++) {
+			cars[i - 1] = readTextFile(new File(args[i]));
+		}
+		write(new File(args[0]), cars);
+	}
+	
+	/**
+	 * Writes every car into one file, the cars must all have the same times
+	 * @param file
+	 * @param cars
+	 */
+	public static void write(File file, CarMotion[] cars) {
+		int sampleCount = cars.length == 0 ? 0 : cars[0].size();
+		for (CarMotion car : cars) {
+			if (car.size() != sampleCount || car.getStartTime() != cars[0].getStartTime() || car.getTimeStep() != cars[0].getTimeStep()) {
+				throw new IllegalArgumentException("Every car must have the same times to share a file");
+			}
+		}
+		
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+			header.order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC);
+			header.putInt(VERSION);
+			header.putLong(cars.length == 0 ? 0 : cars[0].getStartTime());
+			header.putLong(cars.length == 0 ? 0 : cars[0].getTimeStep());
+			header.putInt(sampleCount);
+			header.putInt(cars.length);
+			
+			// Each car is mapped on its own so the whole file can be bigger than a single mapping allows
+			long carBytes = 4L * Double.BYTES * sampleCount;
+			for (int c = 0; c < cars.length; c++) {
+				CarMotion car = cars[c];
+				DoubleBuffer columns = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + c * carBytes, carBytes)
+						.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+				for (int i = 0; i < sampleCount; i++) {
+					columns.put(car.getPositionAt(i));
+				}
+				for (int i = 0; i < sampleCount; i++) {
+					columns.put(car.getVelocityAt(i));
+				}
+				for (int i = 0; i < sampleCount; i++) {
+					columns.put(car.getAccelerationAt(i));
+				}
+				for (int i = 0; i < sampleCount; i++) {
+					columns.put(car.getJerkAt(i));
+				}
+			}
+		}
+		catch(IOException ex) {
+			System.out.println("Error writing to file");
+		}
+	}
+	
+	/**
+	 * Maps a file written by write() so that it can be read from
+	 * @param file
+	 * @return		the mapped file
+	 * @throws IOException	if the file can't be read or isn't in this format
+	 */
+	public static TrajectoryFile open(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining() && channel.read(header) >= 0) {
+			}
+			header.flip();
+			if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION) {
+				throw new IOException(file + " is not a trajectory file");
+			}
+			
+			TrajectoryFile trajectories = new TrajectoryFile();
+			trajectories.startTime = header.getLong();
+			trajectories.timeStep = header.getLong();
+			trajectories.sampleCount = header.getInt();
+			int carCount = header.getInt();
+			
+			long carBytes = 4L * Double.BYTES * trajectories.sampleCount;
+			if (channel.size() < HEADER_BYTES + carCount * carBytes) {
+				throw new IOException(file + " is shorter than its header says");
+			}
+			
+			trajectories.positions = new DoubleBuffer[carCount];
+			trajectories.velocities = new DoubleBuffer[carCount];
+			trajectories.accelerations = new DoubleBuffer[carCount];
+			trajectories.jerks = new DoubleBuffer[carCount];
+			int n = trajectories.sampleCount;
+			for (int c = 0; c < carCount; c++) {
+				// The mapping stays valid after the channel is closed
+				DoubleBuffer columns = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + c * carBytes, carBytes)
+						.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+				trajectories.positions[c] = columns.position(0).slice();
+				trajectories.velocities[c] = columns.position(n).slice();
+				trajectories.accelerations[c] = columns.position(2 * n).slice();
+				trajectories.jerks[c] = columns.position(3 * n).slice();
+			}
+			return trajectories;
+		}
+	}
+	
+	/**
+	 * Reads a text file written by writeCarMotionToFile() back into a CarMotion
+	 * @param file
+	 * @return		the motion in the file
+	 * @throws IOException
+	 */
+	public static CarMotion readTextFile(File file) throws IOException {
+		CarMotion motion = new CarMotion();
+		try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] values = line.trim().split(" ");
+				motion.appendInstance(Double.parseDouble(values[1]), Double.parseDouble(values[2]),
+						Double.parseDouble(values[3]), Double.parseDouble(values[4]), Long.parseLong(values[0]));
+			}
+		}
+		return motion;
+	}
+	
+	/**
+	 * Converts a time into the index of the columns
+	 * @param time	should be in millis
+	 * @throws IndexOutOfBoundsException	if there is no instance at that time
+	 */
+	public int indexOf(long time) {
+		long offset = time - startTime;
+		if (timeStep > 0 && offset % timeStep == 0 && offset >= 0 && offset / timeStep < sampleCount) {
+			return (int)(offset / timeStep);
+		} else if (offset == 0 && sampleCount > 0) {
+			return 0;
+		}
+		throw new IndexOutOfBoundsException("No instance at time " + time);
+	}
+	
+	/**
+	 * A read only Trajectory for one of the cars, so the file can be used wherever a motion is expected
+	 * @param car	index of the car, in the order they were written
+	 */
+	public Trajectory getCar(int car) {
+		return new Trajectory() {
+			@Override
+			public double getPosition(long time) {
+				return TrajectoryFile.this.getPosition(car, time);
+			}
+			
+			@Override
+			public double getVelocity(long time) {
+				return TrajectoryFile.this.getVelocity(car, time);
+			}
+			
+			@Override
+			public double getAcceleration(long time) {
+				return TrajectoryFile.this.getAcceleration(car, time);
+			}
+			
+			@Override
+			public double getJerk(long time) {
+				return TrajectoryFile.this.getJerk(car, time);
+			}
+			
+			@Override
+			public long getLastTime() {
+				return getTime(sampleCount - 1);
+			}
+			
+			@Override
+			public void appendInstance(double position, double velocity, double acceleration, double jerk, long time) {
+				throw new UnsupportedOperationException("Trajectory files are read only");
+			}
+		};
+	}
+	
+	/**
+	 * Getters for a car's variables by time
+	 * @param car	index of the car, in the order they were written
+	 * @param time	should be in millis
+	 */
+	public double getPosition(int car, long time) {
+		return positions[car].get(indexOf(time));
+	}
+	
+	public double getVelocity(int car, long time) {
+		return velocities[car].get(indexOf(time));
+	}
+	
+	public double getAcceleration(int car, long time) {
+		return accelerations[car].get(indexOf(time));
+	}
+	
+	public double getJerk(int car, long time) {
+		return jerks[car].get(indexOf(time));
+	}
+	
+	/**
+	 * Reads one car's motion out of the file into memory
+	 * @param car	index of the car, 0 being the lead car
+	 * @return		a copy of the car's motion, which can be appended to
+	 */
+	public CarMotion copyCar(int car) {
+		CarMotion motion = new CarMotion(timeStep, sampleCount);
+		for (int i = 0; i < sampleCount; i++) {
+			motion.appendInstance(getPositionAt(car, i), getVelocityAt(car, i), getAccelerationAt(car, i), getJerkAt(car, i), getTime(i));
+		}
+		return motion;
+	}
+	
+	/**
+	 * Getters which go straight to the index rather than the time
+	 */
+	public double getPositionAt(int car, int index) {
+		return positions[car].get(index);
+	}
+	
+	public double getVelocityAt(int car, int index) {
+		return velocities[car].get(index);
+	}
+	
+	public double getAccelerationAt(int car, int index) {
+		return accelerations[car].get(index);
+	}
+	
+	public double getJerkAt(int car, int index) {
+		return jerks[car].get(index);
+	}
+	
+	public long getTime(int index) {
+		return startTime + index * timeStep;
+	}
+	
+	public long getStartTime() {
+		return startTime;
+	}
+	
+	public long getTimeStep() {
+		return timeStep;
+	}
+	
+	public int getSampleCount() {
+		return sampleCount;
+	}
+	
+	public int getCarCount() {
+		return positions.length;
+	}
+}
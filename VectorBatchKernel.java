@@ -0,0 +1,105 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * BatchKernel using the incubating Vector API, so the loops are vectorised whatever the JIT decides
+ * Only loaded when the jdk.incubator.vector module is present, see BatchKernel.create().
+ * No fused multiply-adds are used, every lane does exactly what the plain loops do
+ * @author Benjamin Chant
+ */
+public class VectorBatchKernel implements BatchKernel {
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+	
+	@Override
+	public void constantAcceleration(double[] position, double[] velocity, double[] nextPosition, double[] nextVelocity,
+			double acceleration, double timeStep, int count) {
+		double velocityChange = acceleration * timeStep;
+		int i = 0;
+		for (int bound = SPECIES.loopBound(count); i < bound; i += SPECIES.length()) {
+			DoubleVector v = DoubleVector.fromArray(SPECIES, velocity, i).add(velocityChange);
+			DoubleVector p = DoubleVector.fromArray(SPECIES, position, i).add(v.mul(timeStep));
+			v.intoArray(nextVelocity, i);
+			p.intoArray(nextPosition, i);
+		}
+		for (; i < count; i++) {
+			double v = velocity[i] + velocityChange;
+			nextVelocity[i] = v;
+			nextPosition[i] = position[i] + v * timeStep;
+		}
+	}
+	
+	@Override
+	public void linearCarFollowing(double[] oldLeadVelocity, double[] oldVelocity, double[] position, double[] velocity,
+			double[] nextPosition, double[] nextVelocity, double[] lambda, double[] maxAcceleration, double timeStep, int count) {
+		int i = 0;
+		for (int bound = SPECIES.loopBound(count); i < bound; i += SPECIES.length()) {
+			DoubleVector relative = DoubleVector.fromArray(SPECIES, oldLeadVelocity, i).sub(DoubleVector.fromArray(SPECIES, oldVelocity, i));
+			DoubleVector a = DoubleVector.fromArray(SPECIES, lambda, i).mul(relative);
+			DoubleVector v = DoubleVector.fromArray(SPECIES, velocity, i).add(a.mul(timeStep));
+			DoubleVector p = DoubleVector.fromArray(SPECIES, position, i).add(v.mul(timeStep));
+			v.intoArray(nextVelocity, i);
+			p.intoArray(nextPosition, i);
+			DoubleVector.fromArray(SPECIES, maxAcceleration, i).max(a.abs()).intoArray(maxAcceleration, i);
+		}
+		for (; i < count; i++) {
+			double a = lambda[i] * (oldLeadVelocity[i] - oldVelocity[i]);
+			double v = velocity[i] + a * timeStep;
+			nextVelocity[i] = v;
+			nextPosition[i] = position[i] + v * timeStep;
+			maxAcceleration[i] = Math.max(maxAcceleration[i], Math.abs(a));
+		}
+	}
+	
+	@Override
+	public void proportionalAcceleration(double[] oldLeadPosition, double[] oldLeadVelocity, double[] oldPosition, double[] position, double[] velocity,
+			double[] nextPosition, double[] nextVelocity, double[] lambda, double[] maxAcceleration, ModelConfig config, double timeStep, int count) {
+		double rxnTime = (double)config.getReactionTime();
+		double twoMaxDecel = 2.0 * config.getMaxDecel();
+		double maxAccel = config.getMaxAccel();
+		double maxDecel = config.getMaxDecel();
+		int i = 0;
+		for (int bound = SPECIES.loopBound(count); i < bound; i += SPECIES.length()) {
+			DoubleVector leadV = DoubleVector.fromArray(SPECIES, oldLeadVelocity, i);
+			DoubleVector safeDistance = leadV.mul(rxnTime).div(1000.0).add(TrafficModel.VEHICLE_LENGTH).sub(leadV.mul(leadV).div(twoMaxDecel));
+			DoubleVector safePosition = DoubleVector.fromArray(SPECIES, oldLeadPosition, i).sub(safeDistance);
+			DoubleVector a = DoubleVector.fromArray(SPECIES, lambda, i).mul(safePosition.sub(DoubleVector.fromArray(SPECIES, oldPosition, i)));
+			VectorMask<Double> tooFast = a.compare(VectorOperators.GT, maxAccel);
+			a = a.blend(maxAccel, tooFast);
+			VectorMask<Double> tooSlow = a.compare(VectorOperators.LT, maxDecel);
+			a = a.blend(maxDecel, tooSlow);
+			DoubleVector v = DoubleVector.fromArray(SPECIES, velocity, i).add(a.mul(timeStep));
+			DoubleVector p = DoubleVector.fromArray(SPECIES, position, i).add(v.mul(timeStep));
+			v.intoArray(nextVelocity, i);
+			p.intoArray(nextPosition, i);
+			DoubleVector.fromArray(SPECIES, maxAcceleration, i).max(a.abs()).intoArray(maxAcceleration, i);
+		}
+		for (; i < count; i++) {
+			double leadV = oldLeadVelocity[i];
+			double safeDistance = TrafficModel.VEHICLE_LENGTH + leadV * rxnTime / 1000.0 - leadV*leadV / twoMaxDecel;
+			double a = lambda[i] * ((oldLeadPosition[i] - safeDistance) - oldPosition[i]);
+			if (a > maxAccel) {
+				a = maxAccel;
+			} else if (a < maxDecel) {
+				a = maxDecel;
+			}
+			double v = velocity[i] + a * timeStep;
+			nextVelocity[i] = v;
+			nextPosition[i] = position[i] + v * timeStep;
+			maxAcceleration[i] = Math.max(maxAcceleration[i], Math.abs(a));
+		}
+	}
+	
+	@Override
+	public void minGap(double[] leadPosition, double[] position, double[] minGap, int count) {
+		int i = 0;
+		for (int bound = SPECIES.loopBound(count); i < bound; i += SPECIES.length()) {
+			DoubleVector gap = DoubleVector.fromArray(SPECIES, leadPosition, i).sub(DoubleVector.fromArray(SPECIES, position, i));
+			DoubleVector.fromArray(SPECIES, minGap, i).min(gap).intoArray(minGap, i);
+		}
+		for (; i < count; i++) {
+			minGap[i] = Math.min(minGap[i], leadPosition[i] - position[i]);
+		}
+	}
+}
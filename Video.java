@@ -4,6 +4,7 @@ import javafx.animation.Timeline;
 import javafx.application.*;
 import javafx.scene.Group;
 import javafx.scene.Scene;
+import javafx.scene.canvas.Canvas;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
 import javafx.stage.Stage;
@@ -12,6 +13,8 @@ import javafx.util.Duration;
 
 /**
  * Creates a window to display the resulting motion of the cars in the model as an animation
+ * Run with the argument "canvas" to draw with a CanvasRenderer instead of a Timeline,
+ * or "followers=1000" for a whole Platoon of following cars (which is always drawn on a canvas)
  * @author Benjamin Chant
  */
 public class Video extends Application{
@@ -20,15 +23,35 @@ public class Video extends Application{
 	private static CarMotion leadCarMotion;
 	private static CarMotion firstCarMotion;
 	private static CarMotion secondCarMotion;
+	private static CarMotion[] carMotions;
+	private static boolean useCanvas = false;
 
 	public static void main(String args[]) {
+		int followers = 0;
+		for (String arg : args) {
+			if (arg.equals("canvas")) {
+				useCanvas = true;
+			} else if (arg.startsWith("followers=")) {
+				followers = Integer.parseInt(arg.substring("followers=".length()));
+				useCanvas = true;
+			}
+		}
+		
 		// Use TrafficModel to perform all the computations and get the result
-		CarMotion[] results = TrafficModel.run();
+		CarMotion[] results;
+		if (followers > 0) {
+			ModelConfig config = new ModelConfig();
+			CarMotion leadCar = TrafficModel.generateLeadCar(config);
+			results = Platoon.generate(config, leadCar, Platoon.evenlySpaced(followers, 20.0, 20.0), Runtime.getRuntime().availableProcessors());
+		} else {
+			results = TrafficModel.run();
+		}
 		
 		// Save a local CarMotion copy so that don't need to read in from text file later
+		carMotions = results;
 		leadCarMotion = results[0];
 		firstCarMotion = results[1];
-		secondCarMotion = results[2];
+		secondCarMotion = results.length > 2 ? results[2] : results[1];
 		
 		// Hands over to existing library methods to create the application we continue in start() method
 		Video.launch(args);
@@ -43,6 +66,15 @@ public class Video extends Application{
         Scene scene = new Scene(root, 1000, 400);
         primaryStage.setScene(scene);
         
+        if (useCanvas) {
+        	// Draws every car straight from the motions each frame, nothing is built up front
+        	Canvas canvas = new Canvas(scene.getWidth(), scene.getHeight());
+        	root.getChildren().add(canvas);
+        	new CanvasRenderer(canvas, carMotions).start();
+        	primaryStage.show();
+        	return;
+        }
+        
         // Creates the "cars"
         Rectangle leadCar = new Rectangle(TrafficModel.VEHICLE_LENGTH, 5, Color.BLUE);
         Rectangle firstCar = new Rectangle(TrafficModel.VEHICLE_LENGTH, 5, Color.RED);
@@ -59,6 +91,7 @@ public class Video extends Application{
         
         // States when and where each vehicle will be
         Timeline timeline = new Timeline();
+        Metrics.Phase phase = Metrics.begin("keyframes", -1);
         for (long time = 0; time < TrafficModel.RUN_TIME; time += TrafficModel.TIME_STEP) {
         	double leadPosition = leadCarMotion.getInstance(time).getPosition() * scaleFactor; 
         	double firstPosition = firstCarMotion.getInstance(time).getPosition() * scaleFactor;
@@ -68,6 +101,7 @@ public class Video extends Application{
     				new KeyValue(secondCar.translateXProperty(), secondPosition));
             timeline.getKeyFrames().add(keyFrame);
 		}
+        Metrics.end(phase, timeline.getKeyFrames().size());
         
         // Sets the animation to loop and starts showing it
         timeline.setCycleCount(Timeline.INDEFINITE);
@@ -0,0 +1,44 @@
+package trafficmodel.benchmarks;
+
+import java.lang.management.ManagementFactory;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Reports "bytesPerStep", the bytes the benchmark thread allocated per step over the iteration,
+ * read from the JVM's per thread allocation counter before and after each call
+ * @author Benjamin Chant
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class AllocationCounters {
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+	public double bytesPerStep;
+	private long bytes;
+	private long steps;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		bytesPerStep = 0;
+		bytes = 0;
+		steps = 0;
+	}
+
+	/**
+	 * @return		the thread's allocated bytes so far, to be handed back to end()
+	 */
+	long start() {
+		return THREADS.getCurrentThreadAllocatedBytes();
+	}
+
+	void end(long start, long stepsDone) {
+		bytes += THREADS.getCurrentThreadAllocatedBytes() - start;
+		steps += stepsDone;
+		bytesPerStep = (double)bytes / steps;
+	}
+}
@@ -0,0 +1,97 @@
+package trafficmodel.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CarMotion's getInstance, appendInstance and writeCarMotionToFile at several lengths of motion
+ * Each getInstance call does a batch of lookups spread over the whole motion, so the steps are lookups
+ * @author Benjamin Chant
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CarMotionBenchmark {
+	private static final long TIME_STEP = 10; // millis
+	private static final int LOOKUPS = 1024;
+
+	@Param({"1000", "10000", "100000", "1000000"})
+	public int length;
+
+	private Object carMotion;
+	private long[] lookupTimes;
+	private File file;
+
+	@Setup
+	public void setup() throws IOException {
+		carMotion = buildMotion(length);
+
+		// Times picked with a fixed stride so they cover the motion without a random number generator in the loop
+		lookupTimes = new long[LOOKUPS];
+		long stride = 7919;
+		for (int i = 0; i < LOOKUPS; i++) {
+			lookupTimes[i] = (i * stride % length) * TIME_STEP;
+		}
+
+		file = File.createTempFile("carMotion", ".txt");
+	}
+
+	@TearDown
+	public void tearDown() {
+		file.delete();
+	}
+
+	private static Object buildMotion(int length) {
+		Object carMotion = ModelHandles.newCarMotion();
+		for (int i = 0; i < length; i++) {
+			ModelHandles.appendInstance(carMotion, ModelHandles.newCarInstance(i, 10.0, 0.0, 0.0), i * TIME_STEP);
+		}
+		return carMotion;
+	}
+
+	@Benchmark
+	public double getInstance(StepCounters counters, AllocationCounters allocations) {
+		long start = allocations.start();
+		double sum = 0;
+		for (long time : lookupTimes) {
+			sum += ModelHandles.getPosition(ModelHandles.getInstance(carMotion, time));
+		}
+		allocations.end(start, LOOKUPS);
+		counters.steps += LOOKUPS;
+		return sum;
+	}
+
+	@Benchmark
+	public Object appendInstance(StepCounters counters, AllocationCounters allocations) {
+		long start = allocations.start();
+		Object motion = buildMotion(length);
+		allocations.end(start, length);
+		counters.steps += length;
+		return motion;
+	}
+
+	@Benchmark
+	public void writeCarMotionToFile(StepCounters counters, AllocationCounters allocations) {
+		long start = allocations.start();
+		ModelHandles.writeCarMotionToFile(carMotion, file);
+		allocations.end(start, length);
+		counters.steps += length;
+	}
+}
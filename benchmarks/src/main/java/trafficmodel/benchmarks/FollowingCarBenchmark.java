@@ -0,0 +1,53 @@
+package trafficmodel.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * TrafficModel.generateFollowingCar for every Model behind the QUICK_ACCELERATION lead car
+ * @author Benjamin Chant
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FollowingCarBenchmark {
+	@Param({"SAFE_DISTANCE", "PROPORTIONAL_ACCELERATION", "LINEAR_CAR_FOLLOWING", "KEEPING_UP", "LINEAR_PREDICION", "FIRST_ORDER"})
+	public String model;
+
+	@Param({"10000", "100000", "1000000"})
+	public long runTime;
+
+	private Object config;
+	private Object leadCar;
+	private int steps;
+
+	@Setup
+	public void setup() {
+		config = ModelHandles.config(model, "QUICK_ACCELERATION", runTime);
+		leadCar = ModelHandles.generateLeadCar(config);
+		steps = ModelHandles.sampleCount(config) - 1;
+	}
+
+	@Benchmark
+	public Object generateFollowingCar(StepCounters counters, AllocationCounters allocations) {
+		long start = allocations.start();
+		Object followingCar = ModelHandles.generateFollowingCar(config, leadCar, 20.0);
+		allocations.end(start, steps);
+		counters.steps += steps;
+		return followingCar;
+	}
+}
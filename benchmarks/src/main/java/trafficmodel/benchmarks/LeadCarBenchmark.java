@@ -0,0 +1,51 @@
+package trafficmodel.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * TrafficModel.generateLeadCar for every Case
+ * @author Benjamin Chant
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LeadCarBenchmark {
+	@Param({"CONSTANT_VELOCITY", "QUICK_ACCELERATION", "SMOOTH_ACCELERATION", "OSCILLATORY"})
+	public String leadCase;
+
+	@Param({"10000", "100000", "1000000"})
+	public long runTime;
+
+	private Object config;
+	private int steps;
+
+	@Setup
+	public void setup() {
+		config = ModelHandles.config("LINEAR_CAR_FOLLOWING", leadCase, runTime);
+		steps = ModelHandles.sampleCount(config) - 1;
+	}
+
+	@Benchmark
+	public Object generateLeadCar(StepCounters counters, AllocationCounters allocations) {
+		long start = allocations.start();
+		Object leadCar = ModelHandles.generateLeadCar(config);
+		allocations.end(start, steps);
+		counters.steps += steps;
+		return leadCar;
+	}
+}
@@ -0,0 +1,188 @@
+package trafficmodel.benchmarks;
+
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+/**
+ * JMH won't generate benchmarks in the default package and classes in the default package can't be named from any other,
+ * so the benchmarks reach the model through these method handles instead.
+ * The handles are constants, so once the JIT has compiled a benchmark calling them costs the same as calling the method
+ * @author Benjamin Chant
+ */
+final class ModelHandles {
+	private static final Class<?> TRAFFIC_MODEL = load("TrafficModel");
+	private static final Class<?> MODEL_CONFIG = load("ModelConfig");
+	private static final Class<?> CAR_MOTION = load("CarMotion");
+	private static final Class<?> CAR_INSTANCE = load("CarInstance");
+	private static final Class<?> PLATOON = load("Platoon");
+
+	private static final MethodHandle NEW_CONFIG = constructor(MODEL_CONFIG);
+	private static final MethodHandle SET_MODEL = method(MODEL_CONFIG, "setModel", load("TrafficModel$Model"));
+	private static final MethodHandle SET_CASE = method(MODEL_CONFIG, "setCase", load("TrafficModel$Case"));
+	private static final MethodHandle SET_RUN_TIME = method(MODEL_CONFIG, "setRunTime", long.class);
+	private static final MethodHandle GET_SAMPLE_COUNT = method(MODEL_CONFIG, "getSampleCount");
+	private static final MethodHandle GENERATE_LEAD_CAR = method(TRAFFIC_MODEL, "generateLeadCar", MODEL_CONFIG);
+	private static final MethodHandle GENERATE_FOLLOWING_CAR = method(TRAFFIC_MODEL, "generateFollowingCar", MODEL_CONFIG, CAR_MOTION, double.class);
+	private static final MethodHandle GENERATE_PLATOON = method(PLATOON, "generate", MODEL_CONFIG, CAR_MOTION, double[].class, int.class);
+	private static final MethodHandle NEW_CAR_MOTION = constructor(CAR_MOTION);
+	private static final MethodHandle NEW_CAR_INSTANCE = constructor(CAR_INSTANCE, double.class, double.class, double.class, double.class);
+	private static final MethodHandle APPEND_INSTANCE = method(CAR_MOTION, "appendInstance", CAR_INSTANCE, long.class);
+	private static final MethodHandle GET_INSTANCE = method(CAR_MOTION, "getInstance", long.class);
+	private static final MethodHandle GET_POSITION = method(CAR_INSTANCE, "getPosition");
+	private static final MethodHandle WRITE_CAR_MOTION = method(CAR_MOTION, "writeCarMotionToFile", File.class);
+
+	private ModelHandles() {
+	}
+
+	private static Class<?> load(String name) {
+		try {
+			return Class.forName(name);
+		} catch (ClassNotFoundException ex) {
+			throw new IllegalStateException("The model classes should be on the class path", ex);
+		}
+	}
+
+	/**
+	 * Finds a method whatever its access, with every reference type erased to Object so it can be called with invokeExact
+	 */
+	private static MethodHandle method(Class<?> owner, String name, Class<?>... parameters) {
+		try {
+			Method method = owner.getDeclaredMethod(name, parameters);
+			return erase(MethodHandles.lookup().unreflect(open(method)));
+		} catch (ReflectiveOperationException ex) {
+			throw new IllegalStateException(owner.getName() + "." + name + " is missing", ex);
+		}
+	}
+
+	private static MethodHandle constructor(Class<?> owner, Class<?>... parameters) {
+		try {
+			Constructor<?> constructor = owner.getDeclaredConstructor(parameters);
+			return erase(MethodHandles.lookup().unreflectConstructor(open(constructor)));
+		} catch (ReflectiveOperationException ex) {
+			throw new IllegalStateException(owner.getName() + " constructor is missing", ex);
+		}
+	}
+
+	private static <T extends AccessibleObject> T open(T member) {
+		member.setAccessible(true);
+		return member;
+	}
+
+	private static MethodHandle erase(MethodHandle handle) {
+		return handle.asType(handle.type().erase());
+	}
+
+	/**
+	 * A ModelConfig with the given Model, Case and run time, everything else left at the defaults
+	 */
+	static Object config(String model, String currentCase, long runTime) {
+		try {
+			Object config = (Object)NEW_CONFIG.invokeExact();
+			SET_MODEL.invokeExact(config, (Object)enumConstant("TrafficModel$Model", model));
+			SET_CASE.invokeExact(config, (Object)enumConstant("TrafficModel$Case", currentCase));
+			SET_RUN_TIME.invokeExact(config, runTime);
+			return config;
+		} catch (Throwable ex) {
+			throw rethrow(ex);
+		}
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static Object enumConstant(String enumName, String constant) {
+		return Enum.valueOf((Class)load(enumName), constant);
+	}
+
+	static int sampleCount(Object config) {
+		try {
+			return (int)GET_SAMPLE_COUNT.invokeExact(config);
+		} catch (Throwable ex) {
+			throw rethrow(ex);
+		}
+	}
+
+	static Object generateLeadCar(Object config) {
+		try {
+			return (Object)GENERATE_LEAD_CAR.invokeExact(config);
+		} catch (Throwable ex) {
+			throw rethrow(ex);
+		}
+	}
+
+	static Object generateFollowingCar(Object config, Object leadCar, double offset) {
+		try {
+			return (Object)GENERATE_FOLLOWING_CAR.invokeExact(config, leadCar, offset);
+		} catch (Throwable ex) {
+			throw rethrow(ex);
+		}
+	}
+
+	static Object[] generatePlatoon(Object config, Object leadCar, double[] offsets) {
+		try {
+			return (Object[])(Object)GENERATE_PLATOON.invokeExact(config, leadCar, (Object)offsets, 1);
+		} catch (Throwable ex) {
+			throw rethrow(ex);
+		}
+	}
+
+	static Object newCarMotion() {
+		try {
+			return (Object)NEW_CAR_MOTION.invokeExact();
+		} catch (Throwable ex) {
+			throw rethrow(ex);
+		}
+	}
+
+	static Object newCarInstance(double position, double velocity, double acceleration, double jerk) {
+		try {
+			return (Object)NEW_CAR_INSTANCE.invokeExact(position, velocity, acceleration, jerk);
+		} catch (Throwable ex) {
+			throw rethrow(ex);
+		}
+	}
+
+	static void appendInstance(Object carMotion, Object instance, long time) {
+		try {
+			APPEND_INSTANCE.invokeExact(carMotion, instance, time);
+		} catch (Throwable ex) {
+			throw rethrow(ex);
+		}
+	}
+
+	static Object getInstance(Object carMotion, long time) {
+		try {
+			return (Object)GET_INSTANCE.invokeExact(carMotion, time);
+		} catch (Throwable ex) {
+			throw rethrow(ex);
+		}
+	}
+
+	static double getPosition(Object carInstance) {
+		try {
+			return (double)GET_POSITION.invokeExact(carInstance);
+		} catch (Throwable ex) {
+			throw rethrow(ex);
+		}
+	}
+
+	static void writeCarMotionToFile(Object carMotion, File file) {
+		try {
+			WRITE_CAR_MOTION.invokeExact(carMotion, file);
+		} catch (Throwable ex) {
+			throw rethrow(ex);
+		}
+	}
+
+	private static RuntimeException rethrow(Throwable ex) {
+		if (ex instanceof RuntimeException) {
+			return (RuntimeException)ex;
+		}
+		if (ex instanceof Error) {
+			throw (Error)ex;
+		}
+		return new IllegalStateException(ex);
+	}
+}
@@ -0,0 +1,61 @@
+package trafficmodel.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A whole platoon of following cars run one after the other with Platoon.generate, steps count every car
+ * @author Benjamin Chant
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlatoonBenchmark {
+	@Param({"LINEAR_CAR_FOLLOWING", "FIRST_ORDER"})
+	public String model;
+
+	@Param({"10000", "100000"})
+	public long runTime;
+
+	@Param({"2", "10", "100"})
+	public int platoonSize;
+
+	private Object config;
+	private Object leadCar;
+	private double[] offsets;
+	private long steps;
+
+	@Setup
+	public void setup() {
+		config = ModelHandles.config(model, "QUICK_ACCELERATION", runTime);
+		leadCar = ModelHandles.generateLeadCar(config);
+		offsets = new double[platoonSize];
+		for (int i = 0; i < platoonSize; i++) {
+			offsets[i] = 20.0 - 20.0 * i;
+		}
+		steps = (long)platoonSize * (ModelHandles.sampleCount(config) - 1);
+	}
+
+	@Benchmark
+	public Object[] generatePlatoon(StepCounters counters, AllocationCounters allocations) {
+		long start = allocations.start();
+		Object[] cars = ModelHandles.generatePlatoon(config, leadCar, offsets);
+		allocations.end(start, steps);
+		counters.steps += steps;
+		return cars;
+	}
+}
@@ -0,0 +1,23 @@
+package trafficmodel.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the simulation steps (or lookups, appends, lines written) done by a benchmark,
+ * so alongside the usual per-call score JMH reports "steps" as steps/second
+ * @author Benjamin Chant
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class StepCounters {
+	public long steps;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		steps = 0;
+	}
+}